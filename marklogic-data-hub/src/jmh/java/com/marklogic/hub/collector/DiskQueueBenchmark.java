@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link DiskQueue} with {@link MappedDiskQueue} for the way the
+ * collector uses them: fill once with uris, then drain.
+ *
+ * Each invocation fills a fresh queue with the same in-memory size the
+ * collector uses, so the numbers include spilling to and reading back from disk.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DiskQueueBenchmark {
+
+    private static final int IN_MEMORY_SIZE = 5000;
+
+    @Param({"1000000", "10000000", "100000000"})
+    public int uriCount;
+
+    @Param({"DiskQueue", "MappedDiskQueue"})
+    public String implementation;
+
+    private Queue<String> newQueue() {
+        if ("DiskQueue".equals(implementation)) {
+            return new DiskQueue<String>(IN_MEMORY_SIZE);
+        }
+        return new MappedDiskQueue(IN_MEMORY_SIZE);
+    }
+
+    private Queue<String> fill() {
+        Queue<String> queue = newQueue();
+        for (int i = 0; i < uriCount; i++) {
+            queue.add("/staging/customers/customer-" + i + ".json");
+        }
+        return queue;
+    }
+
+    @Benchmark
+    public void fillAndIterate(Blackhole blackhole) {
+        Queue<String> queue = fill();
+        Iterator<String> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+        queue.clear();
+    }
+
+    @Benchmark
+    public void fillAndPoll(Blackhole blackhole) {
+        Queue<String> queue = fill();
+        String uri;
+        while ((uri = queue.poll()) != null) {
+            blackhole.consume(uri);
+        }
+        queue.clear();
+    }
+}
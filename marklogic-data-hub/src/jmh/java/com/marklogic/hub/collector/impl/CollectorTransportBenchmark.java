@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares reading a collector response as plain text and gzip encoded.
+ *
+ * The response body is read through a stream throttled to the given link
+ * speed, so the time includes the transfer as well as decoding. A link
+ * speed of 0 reads as fast as possible and measures decoding alone.
+ * The bytes on the wire for each encoding are printed during setup.
+ *
+ * The baseline transport is how the collector read responses before:
+ * a platform charset reader with the default buffer sizes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CollectorTransportBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int uriCount;
+
+    @Param({"baseline", "identity", "gzip"})
+    public String transport;
+
+    @Param({"0", "100", "1000"})
+    public int megabitsPerSecond;
+
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = "gzip".equals(transport) ? new GZIPOutputStream(bytes, 64 * 1024) : bytes;
+        for (int i = 0; i < uriCount; i++) {
+            String uri = String.format("/staging/customers/%d/%08x-%d.json\n", i % 97, i * 0x9E3779B1, i);
+            out.write(uri.getBytes(StandardCharsets.UTF_8));
+        }
+        out.close();
+        body = bytes.toByteArray();
+        System.out.println();
+        System.out.println(transport + ": " + uriCount + " uris, " + body.length + " bytes on the wire");
+    }
+
+    @Benchmark
+    public long read(Blackhole blackhole) throws IOException {
+        InputStream in = new ThrottledInputStream(new ByteArrayInputStream(body), megabitsPerSecond);
+        if ("baseline".equals(transport)) {
+            long count = 0;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line);
+                count++;
+            }
+            reader.close();
+            return count;
+        }
+        return CollectorResponseReader.read(in, "gzip".equals(transport) ? CollectorResponseReader.GZIP : null, blackhole::consume);
+    }
+
+    /**
+     * Delivers bytes no faster than the given link speed.
+     */
+    private static class ThrottledInputStream extends FilterInputStream {
+        private final double bytesPerNano;
+        private final long start = System.nanoTime();
+        private long delivered = 0;
+
+        ThrottledInputStream(InputStream in, int megabitsPerSecond) {
+            super(in);
+            this.bytesPerNano = megabitsPerSecond * 1000000.0 / 8 / TimeUnit.SECONDS.toNanos(1);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // hand out at most one tcp window at a time
+            int read = super.read(b, off, Math.min(len, 64 * 1024));
+            if (read > 0 && bytesPerNano > 0) {
+                delivered += read;
+                long due = start + (long) (delivered / bytesPerNano);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.flow.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.extensions.ResourceManager;
+import com.marklogic.hub.flow.RunFlowResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the client-side work done for every batch of a harmonize job,
+ * apart from the http call itself.
+ *
+ * perBatchBefore repeats what every batch used to do: initialize a new
+ * flow resource on the client, and build one ObjectMapper to serialize
+ * the options and another to parse the response. perBatchAfter looks up
+ * the job's flow resource for the host and parses the response with the
+ * shared mapper. No server is needed; clients connect lazily.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FlowResourceBenchmark {
+
+    private static final String RESPONSE = "{\"totalCount\":100,\"errorCount\":0," +
+        "\"completedItems\":[\"/customer-1.json\",\"/customer-2.json\",\"/customer-3.json\"],\"failedItems\":[],\"errors\":[]}";
+
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+    private final Map<String, Object> options = new HashMap<>();
+    private final Map<DatabaseClient, ResourceManager> flowResources = new ConcurrentHashMap<>();
+    private DatabaseClient client;
+    private String serializedOptions;
+
+    @Setup
+    public void setup() throws IOException {
+        client = DatabaseClientFactory.newClient("localhost", 8010,
+            new DatabaseClientFactory.DigestAuthContext("admin", "admin"));
+        options.put("entity", "Customer");
+        options.put("flow", "harmonize-customers");
+        options.put("flowType", "harmonize");
+        options.put("source", "crm");
+        serializedOptions = sharedMapper.writeValueAsString(options);
+    }
+
+    @TearDown
+    public void teardown() {
+        client.release();
+    }
+
+    @Benchmark
+    public RunFlowResponse perBatchBefore() throws IOException {
+        client.init(FlowRunnerImpl.FlowResource.NAME, new ResourceManager() {});
+        String options = new ObjectMapper().writeValueAsString(this.options);
+        RunFlowResponse response = new ObjectMapper().readValue(RESPONSE, RunFlowResponse.class);
+        response.totalCount += options.length();
+        return response;
+    }
+
+    @Benchmark
+    public RunFlowResponse perBatchAfter() throws IOException {
+        ResourceManager resource = flowResources.computeIfAbsent(client,
+            c -> new FlowRunnerImpl.FlowResource(c, "data-hub-FINAL", null, serializedOptions, false));
+        RunFlowResponse response = sharedMapper.readValue(RESPONSE, RunFlowResponse.class);
+        response.totalCount += resource.hashCode() & 1;
+        return response;
+    }
+}
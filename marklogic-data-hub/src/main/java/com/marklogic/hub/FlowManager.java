@@ -163,7 +163,10 @@ public class FlowManager extends ResourceManager {
                     .withMain(new MainPluginImpl((String) properties.get("mainModule"), CodeFormat.getCodeFormat((String) properties.get("mainCodeFormat"))));
 
                 if (flowType.equals(FlowType.HARMONIZE)) {
-                    flowBuilder.withCollector(new CollectorImpl((String) properties.get("collectorModule"), CodeFormat.getCodeFormat((String) properties.get("collectorCodeFormat"))));
+                    flowBuilder.withCollector(new CollectorImpl(
+                        (String) properties.get("collectorModule"),
+                        CodeFormat.getCodeFormat((String) properties.get("collectorCodeFormat")),
+                        Boolean.parseBoolean((String) properties.get("collectorForestAware"))));
                 }
 
                 return flowBuilder.build();
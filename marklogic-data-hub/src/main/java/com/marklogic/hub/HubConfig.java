@@ -68,6 +68,9 @@ public interface HubConfig {
 
     String DEFAULT_CUSTOM_FOREST_PATH = "forests";
 
+    Integer DEFAULT_COLLECTOR_POOL_SIZE = 32;
+    Integer DEFAULT_COLLECTOR_KEEP_ALIVE = 60;
+
     String getHost();
 
     // staging
@@ -258,6 +261,25 @@ public interface HubConfig {
     String[] getLoadBalancerHosts();
     void setLoadBalancerHosts(String[] loadBalancerHosts);
 
+    // collector http connections
+    Integer getCollectorPoolSize();
+    void setCollectorPoolSize(Integer collectorPoolSize);
+
+    /**
+     * @return how long, in seconds, an idle collector connection is kept open for reuse
+     */
+    Integer getCollectorKeepAlive();
+    void setCollectorKeepAlive(Integer collectorKeepAlive);
+
+    /**
+     * @return true to ask the server for gzip encoded collector responses. The
+     * server compresses the uris in chunks of 10,000, so it holds one chunk's
+     * string and its compressed copy at a time on top of the uri list itself.
+     * Off by default.
+     */
+    boolean getCollectorCompression();
+    void setCollectorCompression(boolean collectorCompression);
+
     String getCustomForestPath();
     void setCustomForestPath(String customForestPath);
 
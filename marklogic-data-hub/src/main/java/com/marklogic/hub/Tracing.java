@@ -1,6 +1,8 @@
 package com.marklogic.hub;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.extensions.ResourceManager;
 import com.marklogic.client.extensions.ResourceServices.ServiceResult;
 import com.marklogic.client.extensions.ResourceServices.ServiceResultIterator;
@@ -8,6 +10,8 @@ import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.util.RequestParameters;
 
+import java.io.IOException;
+
 public class Tracing extends ResourceManager {
     private static final String NAME = "tracing";
 
@@ -17,7 +21,7 @@ public class Tracing extends ResourceManager {
     }
 
     /**
-     * Enables tracing
+     * Enables tracing. What is traced is left to the saved settings, see {@link #saveSettings(TracingSettings)}
      */
     public void enable() {
         RequestParameters params = new RequestParameters();
@@ -50,4 +54,51 @@ public class Tracing extends ResourceManager {
         String enabled = res.getContent(handle).get();
         return Boolean.parseBoolean(enabled);
     }
+
+    /**
+     * Gets how much of each run is kept while tracing is enabled
+     *
+     * @return - the tracing settings of the hub
+     */
+    public TracingSettings getSettings() {
+        RequestParameters params = new RequestParameters();
+        params.add("settings", "true");
+        ServiceResultIterator resultItr = this.getServices().get(params);
+        if (resultItr == null || ! resultItr.hasNext()) {
+            return new TracingSettings();
+        }
+        ServiceResult res = resultItr.next();
+        StringHandle handle = new StringHandle();
+        try {
+            return new ObjectMapper().readValue(res.getContent(handle).get(), TracingSettings.class);
+        }
+        catch (IOException e) {
+            throw new MarkLogicIOException(e);
+        }
+    }
+
+    /**
+     * Saves how much of each run is kept while tracing is enabled. Only the
+     * settings that were given are changed. Does not enable or disable tracing.
+     *
+     * @param settings - the tracing settings
+     */
+    public void saveSettings(TracingSettings settings) {
+        RequestParameters params = new RequestParameters();
+        if (settings.getSamplePercent() != null) {
+            params.add("sample-rate", settings.getSamplePercent().toString());
+        }
+        if (settings.getErrorsOnly() != null) {
+            params.add("errors-only", settings.getErrorsOnly().toString());
+        }
+        if (settings.getMaxStepBytes() != null) {
+            params.add("max-step-bytes", settings.getMaxStepBytes().toString());
+        }
+        if (settings.getHashLargeSteps() != null) {
+            params.add("hash-large-steps", settings.getHashLargeSteps().toString());
+        }
+        if (params.size() > 0) {
+            this.getServices().post(params, new StringHandle("{}").withFormat(Format.JSON));
+        }
+    }
 }
@@ -0,0 +1,96 @@
+package com.marklogic.hub;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How much of each harmonize or input run is kept in the traces database
+ * while tracing is enabled.
+ *
+ * Settings that are not given are null, and are left as they are when the
+ * settings are saved.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TracingSettings {
+
+    private Integer samplePercent;
+    private Boolean errorsOnly;
+    private Integer maxStepBytes;
+    private Boolean hashLargeSteps;
+
+    /**
+     * @param samplePercent - the percentage of identifiers to trace, from 0 to 100.
+     *                      Identifiers that fail are always traced.
+     * @return the settings
+     */
+    public TracingSettings withSamplePercent(int samplePercent) {
+        this.samplePercent = samplePercent;
+        return this;
+    }
+
+    /**
+     * @param errorsOnly - true to only write the traces of identifiers that fail,
+     *                   with every step that ran before the failure
+     * @return the settings
+     */
+    public TracingSettings withErrorsOnly(boolean errorsOnly) {
+        this.errorsOnly = errorsOnly;
+        return this;
+    }
+
+    /**
+     * Limits the size of each input and output kept in a trace step. The size
+     * is measured in characters of the serialized input or output.
+     *
+     * @param maxStepBytes - the largest input or output to keep whole, or 0 for no limit
+     * @return the settings
+     */
+    public TracingSettings withMaxStepBytes(int maxStepBytes) {
+        this.maxStepBytes = maxStepBytes;
+        return this;
+    }
+
+    /**
+     * @param hashLargeSteps - true to replace inputs and outputs larger than the
+     *                       max step bytes with their size and md5 hash, false to
+     *                       cut them at the limit
+     * @return the settings
+     */
+    public TracingSettings withHashLargeSteps(boolean hashLargeSteps) {
+        this.hashLargeSteps = hashLargeSteps;
+        return this;
+    }
+
+    /**
+     * Limits the size of each input and output kept in a trace step. The size
+     * is measured in characters of the serialized input or output.
+     *
+     * @param maxStepBytes - the largest input or output to keep whole, or 0 for no limit
+     * @param hashLargeSteps - true to replace larger ones with their size and md5 hash,
+     *                       false to cut them at the limit
+     * @return the settings
+     */
+    public TracingSettings withMaxStepBytes(int maxStepBytes, boolean hashLargeSteps) {
+        return withMaxStepBytes(maxStepBytes).withHashLargeSteps(hashLargeSteps);
+    }
+
+    @JsonProperty("sample-rate")
+    public Integer getSamplePercent() {
+        return samplePercent;
+    }
+
+    @JsonProperty("errors-only")
+    public Boolean getErrorsOnly() {
+        return errorsOnly;
+    }
+
+    @JsonProperty("max-step-bytes")
+    public Integer getMaxStepBytes() {
+        return maxStepBytes;
+    }
+
+    @JsonProperty("hash-large-steps")
+    public Boolean getHashLargeSteps() {
+        return hashLargeSteps;
+    }
+}
@@ -16,6 +16,7 @@
 package com.marklogic.hub.collector;
 
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.Forest;
 import com.marklogic.hub.HubConfig;
 import com.marklogic.hub.HubDatabase;
 import com.marklogic.hub.flow.CodeFormat;
@@ -31,6 +32,18 @@ public interface Collector {
     CodeFormat getCodeFormat();
     String getModule();
 
+    /**
+     * Whether the collector honors the forestIds option and only returns
+     * results from those forests. Only forest aware collectors are run
+     * once per forest by a partitioned flow runner.
+     *
+     * Set with forest-aware="true" on the collector element of the flow,
+     * or collectorForestAware=true in the flow properties.
+     *
+     * @return true if the collector restricts its results to the forestIds option
+     */
+    boolean isForestAware();
+
     void setHubConfig(HubConfig config);
     HubConfig getHubConfig();
 
@@ -38,4 +51,36 @@ public interface Collector {
     DatabaseClient getClient();
 
     DiskQueue<String> run(String jobId, String entity, String flow, int threadCount, Map<String, Object> options);
+
+    /**
+     * Runs the collector in the background, making each uri available
+     * as soon as it has been read from the server.
+     *
+     * @param jobId - the id of the job the collector belongs to
+     * @param entity - the name of the entity
+     * @param flow - the name of the flow
+     * @param threadCount - the number of threads the flow will run with
+     * @param options - the options to pass to the collector
+     * @return a stream of uris that fills up while the collector runs
+     */
+    UriStream stream(String jobId, String entity, String flow, int threadCount, Map<String, Object> options);
+
+    /**
+     * Runs the collector once per forest, in parallel, against the host that
+     * holds each forest. The results of all forests are merged into one stream.
+     *
+     * The forest ids are passed to the collector as the forestIds option, and
+     * the collector must only return results from those forests. Results are
+     * not filtered afterwards, so this must only be used with collectors that
+     * are {@link #isForestAware() forest aware}.
+     *
+     * @param jobId - the id of the job the collector belongs to
+     * @param entity - the name of the entity
+     * @param flow - the name of the flow
+     * @param threadCount - the maximum number of forests to collect at once
+     * @param options - the options to pass to the collector
+     * @param forests - the forests of the source database
+     * @return a stream of uris that fills up while the collectors run
+     */
+    UriStream stream(String jobId, String entity, String flow, int threadCount, Map<String, Object> options, Forest[] forests);
 }
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.security.InvalidParameterException;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe, disk-backed queue for many producers and many consumers.
+ *
+ * The queue is split into stripes, each a {@link MappedDiskQueue} with its
+ * own lock. Each producer thread is given a stripe of its own the first time
+ * it adds to the queue, until every stripe is taken, and consumers start
+ * polling at a per-thread stripe before moving on to the others, so threads
+ * rarely contend on the same lock. The in-memory size is shared by the
+ * stripes in use, so a single producer keeps as many elements in memory as
+ * an unstriped queue would. Elements added by one producer come out in the
+ * order they were added, but there is no ordering across producers.
+ *
+ * Producers call {@link #finish()} once nothing more will be added.
+ * {@link #poll(long, TimeUnit)} and the consuming iterators block until an
+ * element is available or the queue is finished and drained.
+ */
+public class ConcurrentDiskQueue extends AbstractQueue<String> implements Closeable {
+
+    private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+
+    // where a consumer thread starts polling, kept for the lifetime of the thread
+    private static final ThreadLocal<Integer> HOME_STRIPE =
+        ThreadLocal.withInitial(() -> NEXT_STRIPE.getAndIncrement() & Integer.MAX_VALUE);
+
+    private final int maxInMemorySize;
+    private final File tempDir;
+    private final Stripe[] stripes;
+    private final AtomicLong size = new AtomicLong();
+
+    // stripes[0, activeStripes) have been handed to producers
+    private volatile int activeStripes = 0;
+    private int producers = 0;
+    private final ReentrantLock assignLock = new ReentrantLock();
+    private final ThreadLocal<Stripe> producerStripe = ThreadLocal.withInitial(this::assignStripe);
+
+    private volatile boolean finished = false;
+
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    /**
+     * Construct a queue with one stripe per available processor.
+     *
+     * @param maxInMemorySize Maximum number of elements to keep in memory, across all stripes.
+     */
+    public ConcurrentDiskQueue(int maxInMemorySize) {
+        this(maxInMemorySize, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Construct a queue with the given number of stripes.
+     *
+     * @param maxInMemorySize Maximum number of elements to keep in memory, across all stripes.
+     * @param stripeCount Number of independently locked stripes.
+     * @param tempDir Directory where queue temporary files will be written to.
+     */
+    public ConcurrentDiskQueue(int maxInMemorySize, int stripeCount, File tempDir) {
+        super();
+        if (stripeCount < 1) {
+            throw new InvalidParameterException(ConcurrentDiskQueue.class.getSimpleName() + " must have at least one stripe");
+        }
+        if (maxInMemorySize < stripeCount) {
+            throw new InvalidParameterException(ConcurrentDiskQueue.class.getSimpleName() + " max in-memory size must be at least the stripe count");
+        }
+
+        this.maxInMemorySize = maxInMemorySize;
+        this.tempDir = tempDir;
+        this.stripes = new Stripe[stripeCount];
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, size.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    @Override
+    public boolean offer(String element) {
+        if (element == null) {
+            throw new NullPointerException("Element cannot be null for AbstractQueue");
+        }
+        if (finished) {
+            throw new IllegalStateException(ConcurrentDiskQueue.class.getSimpleName() + " is finished");
+        }
+
+        Stripe stripe = producerStripe.get();
+        boolean added;
+        stripe.lock.lock();
+        try {
+            added = stripe.queue.offer(element);
+        }
+        finally {
+            stripe.lock.unlock();
+        }
+
+        if (added) {
+            size.incrementAndGet();
+            signalConsumers();
+        }
+        return added;
+    }
+
+    @Override
+    public String poll() {
+        if (size.get() == 0) {
+            return null;
+        }
+
+        int active = activeStripes;
+        int home = HOME_STRIPE.get();
+        for (int i = 0; i < active; i++) {
+            Stripe stripe = stripes[(home + i) % active];
+            String element;
+            stripe.lock.lock();
+            try {
+                element = stripe.queue.poll();
+            }
+            finally {
+                stripe.lock.unlock();
+            }
+            if (element != null) {
+                size.decrementAndGet();
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves and removes the head of one of the stripes, waiting if necessary.
+     *
+     * @param timeout how long to wait before giving up
+     * @param unit the time unit of the timeout argument
+     * @return an element, or null if the queue is finished and empty or the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public String poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        while (true) {
+            String element = poll();
+            if (element != null) {
+                return element;
+            }
+            if ((finished && size.get() == 0) || remaining <= 0) {
+                return null;
+            }
+
+            waitLock.lockInterruptibly();
+            try {
+                waitingConsumers.incrementAndGet();
+                // re-check after registering so an element added in between is not missed
+                if (size.get() == 0 && !finished) {
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+            }
+            finally {
+                waitingConsumers.decrementAndGet();
+                waitLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public String peek() {
+        int active = activeStripes;
+        int home = HOME_STRIPE.get();
+        for (int i = 0; i < active; i++) {
+            Stripe stripe = stripes[(home + i) % active];
+            stripe.lock.lock();
+            try {
+                String element = stripe.queue.peek();
+                if (element != null) {
+                    return element;
+                }
+            }
+            finally {
+                stripe.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the queue as complete. No more elements may be added, and waiting
+     * consumers return once the queue has been drained.
+     */
+    public void finish() {
+        finished = true;
+        waitLock.lock();
+        try {
+            notEmpty.signalAll();
+        }
+        finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * @return true once {@link #finish()} has been called
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns a consuming iterator. Every element it returns is removed from
+     * the queue, and {@link Iterator#hasNext()} blocks until an element is
+     * available or the queue is finished and drained. Each consumer thread
+     * should use its own iterator; together they see every element exactly once.
+     *
+     * @return a new consuming iterator
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new ConsumingItr();
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractQueue#clear()
+     *
+     * Implement faster clear (so AbstractQueue doesn't call poll() repeatedly)
+     */
+    @Override
+    public void clear() {
+        int active = activeStripes;
+        for (int i = 0; i < active; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                size.addAndGet(-stripe.queue.size());
+                stripe.queue.clear();
+            }
+            finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Releases the backing stores. The queue is empty and finished afterwards.
+     */
+    @Override
+    public void close() {
+        clear();
+        finish();
+    }
+
+    /**
+     * @return the number of elements the stripes in use keep in memory, together
+     */
+    int getInMemoryCapacity() {
+        int capacity = 0;
+        int active = activeStripes;
+        for (int i = 0; i < active; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                capacity += stripe.queue.getMaxInMemorySize();
+            }
+            finally {
+                stripe.lock.unlock();
+            }
+        }
+        return capacity;
+    }
+
+    // Gives the calling producer the next stripe, opening a new one while there are
+    // stripes left and splitting the in-memory size evenly across the open stripes.
+    private Stripe assignStripe() {
+        assignLock.lock();
+        try {
+            int index = producers++ % stripes.length;
+            if (index == activeStripes) {
+                int active = index + 1;
+                int share = maxInMemorySize / active;
+                for (int i = 0; i < index; i++) {
+                    Stripe stripe = stripes[i];
+                    stripe.lock.lock();
+                    try {
+                        stripe.queue.setMaxInMemorySize(share);
+                    }
+                    finally {
+                        stripe.lock.unlock();
+                    }
+                }
+                stripes[index] = new Stripe(new MappedDiskQueue(share, tempDir));
+                activeStripes = active;
+            }
+            return stripes[index];
+        }
+        finally {
+            assignLock.unlock();
+        }
+    }
+
+    private void signalConsumers() {
+        if (waitingConsumers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signal();
+            }
+            finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final MappedDiskQueue queue;
+
+        Stripe(MappedDiskQueue queue) {
+            this.queue = queue;
+        }
+    }
+
+    private class ConsumingItr implements Iterator<String> {
+        private String next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    while (next == null && !(finished && size.get() == 0)) {
+                        next = poll(1, TimeUnit.SECONDS);
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String element = next;
+            next = null;
+            return element;
+        }
+    }
+}
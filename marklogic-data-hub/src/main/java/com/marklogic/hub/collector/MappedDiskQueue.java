@@ -0,0 +1,367 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.text.MessageFormat;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A queue of strings that keeps its head in memory and spills the rest to a
+ * memory-mapped file.
+ *
+ * The in-memory head is a ring buffer, so {@link #poll()} is O(1). Spilled
+ * elements are stored as length-prefixed UTF-8 records and read back through
+ * mapped regions of the file, so draining the queue does not go through a
+ * Reader or allocate anything but the strings themselves.
+ *
+ * Like {@link DiskQueue} this class is not thread-safe, and iterators are
+ * only valid until the queue is next modified.
+ */
+public class MappedDiskQueue extends AbstractQueue<String> implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(MappedDiskQueue.class.getName());
+
+    // size of the file regions that are mapped at once
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+
+    // bytes used by the length prefix of each record
+    private static final int LENGTH_SIZE = 4;
+
+    // The head of the queue. It is also the tail as long as nothing has spilled to disk.
+    private String[] head;
+    private int maxHeadSize;
+    private int headStart = 0;
+    private int headSize = 0;
+
+    private final File tempDir;
+
+    private File backingFile;
+    private RandomAccessFile backingStore;
+    private FileChannel channel;
+
+    private MappedByteBuffer writeRegion;
+    private long writePosition = 0;
+    private RecordCursor readCursor;
+
+    // Number of elements in the backing store file on disk.
+    private long fileElementCount = 0;
+
+    /**
+     * Construct a disk-backed queue that keeps at most
+     * <code>maxInMemorySize</code> elements in memory.
+     *
+     * @param maxInMemorySize Maximum number of elements to keep in memory.
+     */
+    public MappedDiskQueue(int maxInMemorySize) {
+        this(maxInMemorySize, null);
+    }
+
+    /**
+     * Construct a disk-backed queue that keeps at most
+     * <code>maxInMemorySize</code> elements in memory.
+     *
+     * @param maxInMemorySize Maximum number of elements to keep in memory.
+     * @param tempDir Directory where queue temporary files will be written to.
+     */
+    public MappedDiskQueue(int maxInMemorySize, File tempDir) {
+        super();
+        if (maxInMemorySize < 1) {
+            throw new InvalidParameterException(MappedDiskQueue.class.getSimpleName() + " max in-memory size must be at least one");
+        }
+        if (tempDir != null && !(tempDir.exists() && tempDir.isDirectory() && tempDir.canWrite())) {
+            throw new InvalidParameterException(MappedDiskQueue.class.getSimpleName() + " temporary directory must exist and be writable");
+        }
+
+        this.tempDir = tempDir;
+        this.head = new String[maxInMemorySize];
+        this.maxHeadSize = maxInMemorySize;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#finalize()
+     *
+     * Close down the channel, and toss the temp file.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        if (closeFile()) {
+            LOG.warning(MessageFormat.format("{0} still had open file in finalize", MappedDiskQueue.class.getSimpleName()));
+        }
+        super.finalize();
+    }
+
+    /**
+     * Releases the backing store. The queue is empty afterwards.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, headSize + fileElementCount);
+    }
+
+    @Override
+    public boolean offer(String element) {
+        if (element == null) {
+            throw new NullPointerException("Element cannot be null for AbstractQueue");
+        }
+
+        // If there's anything in the file, or the head is full, then we have to write to the file.
+        if (fileElementCount == 0 && headSize < maxHeadSize) {
+            head[(headStart + headSize) % head.length] = element;
+            headSize++;
+            return true;
+        }
+
+        try {
+            writeRecord(element);
+            return true;
+        } catch (IOException e) {
+            LOG.severe(MessageFormat.format("Error writing to {0} backing store", MappedDiskQueue.class.getSimpleName()));
+            return false;
+        }
+    }
+
+    @Override
+    public String peek() {
+        loadHead();
+        return headSize == 0 ? null : head[headStart];
+    }
+
+    @Override
+    public String poll() {
+        loadHead();
+        if (headSize == 0) {
+            return null;
+        }
+        String element = head[headStart];
+        head[headStart] = null;
+        headStart = (headStart + 1) % head.length;
+        headSize--;
+        return element;
+    }
+
+    /**
+     * @return the maximum number of elements kept in memory
+     */
+    int getMaxInMemorySize() {
+        return maxHeadSize;
+    }
+
+    /**
+     * Changes the maximum number of elements kept in memory. Elements already
+     * in memory stay there; the new limit applies to later additions and to
+     * reloads from the backing store.
+     *
+     * @param maxInMemorySize Maximum number of elements to keep in memory.
+     */
+    void setMaxInMemorySize(int maxInMemorySize) {
+        if (maxInMemorySize < 1) {
+            throw new InvalidParameterException(MappedDiskQueue.class.getSimpleName() + " max in-memory size must be at least one");
+        }
+        if (maxInMemorySize > head.length) {
+            String[] grown = new String[maxInMemorySize];
+            for (int i = 0; i < headSize; i++) {
+                grown[i] = head[(headStart + i) % head.length];
+            }
+            head = grown;
+            headStart = 0;
+        }
+        maxHeadSize = maxInMemorySize;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractQueue#clear()
+     *
+     * Implement faster clear (so AbstractQueue doesn't call poll() repeatedly)
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < headSize; i++) {
+            head[(headStart + i) % head.length] = null;
+        }
+        headStart = 0;
+        headSize = 0;
+        closeFile();
+    }
+
+    private void loadHead() {
+        // only go to disk once the head has been drained
+        if (headSize > 0 || fileElementCount == 0) {
+            return;
+        }
+
+        headStart = 0;
+        if (head.length > maxHeadSize) {
+            // the limit was lowered while the head was in use
+            head = new String[maxHeadSize];
+        }
+        try {
+            while (fileElementCount > 0 && headSize < maxHeadSize) {
+                head[headSize++] = readCursor.next();
+                fileElementCount--;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(MessageFormat.format("Error reading from {0} backing store", MappedDiskQueue.class.getSimpleName()), e);
+        }
+
+        if (fileElementCount == 0) {
+            // everything on disk has been read, so start writing from the beginning again
+            writePosition = 0;
+            writeRegion = null;
+            readCursor = new RecordCursor(0);
+        }
+    }
+
+    private void openFile() throws IOException {
+        if (backingFile == null) {
+            backingFile = File.createTempFile(MappedDiskQueue.class.getSimpleName() + "-backingstore-", null, tempDir);
+            backingFile.deleteOnExit();
+            LOG.log(Level.INFO, "created backing store {0}", backingFile.getAbsolutePath());
+            backingStore = new RandomAccessFile(backingFile, "rw");
+            channel = backingStore.getChannel();
+            writePosition = 0;
+            writeRegion = null;
+            readCursor = new RecordCursor(0);
+        }
+    }
+
+    /**
+     * Make sure the channel is closed, and the temp file has been deleted.
+     *
+     * @return true if we had to close down the file.
+     */
+    private boolean closeFile() {
+        if (backingFile == null) {
+            return false;
+        }
+
+        try {
+            channel.close();
+            backingStore.close();
+        } catch (IOException ex) {
+            // Ignore
+        }
+        channel = null;
+        backingStore = null;
+        writeRegion = null;
+        readCursor = null;
+        writePosition = 0;
+        fileElementCount = 0;
+
+        // mapped regions are only released on gc, so this may fail on some platforms.
+        // deleteOnExit() takes care of it then.
+        backingFile.delete();
+        backingFile = null;
+        return true;
+    }
+
+    private void writeRecord(String element) throws IOException {
+        openFile();
+        byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+        int recordSize = LENGTH_SIZE + bytes.length;
+        if (writeRegion == null || writeRegion.remaining() < recordSize) {
+            // records never straddle two write regions
+            writeRegion = channel.map(FileChannel.MapMode.READ_WRITE, writePosition, Math.max(REGION_SIZE, recordSize));
+        }
+        writeRegion.putInt(bytes.length);
+        writeRegion.put(bytes);
+        writePosition += recordSize;
+        fileElementCount++;
+    }
+
+    /**
+     * Reads records sequentially from the backing store, starting at a given offset.
+     */
+    private class RecordCursor {
+        private long position;
+        private MappedByteBuffer region;
+        private byte[] scratch = new byte[256];
+
+        RecordCursor(long position) {
+            this.position = position;
+        }
+
+        String next() throws IOException {
+            ensureMapped(LENGTH_SIZE);
+            int length = region.getInt(region.position());
+            ensureMapped(LENGTH_SIZE + length);
+            region.position(region.position() + LENGTH_SIZE);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            region.get(scratch, 0, length);
+            position += LENGTH_SIZE + length;
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void ensureMapped(int bytes) throws IOException {
+            if (region == null || region.remaining() < bytes) {
+                long size = Math.min(Math.max(REGION_SIZE, bytes), channel.size() - position);
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            }
+        }
+    }
+
+    private class Itr implements Iterator<String> {
+        private int headIndex = 0;
+        private final int headCount = headSize;
+        private long fileRemaining = fileElementCount;
+        private final RecordCursor cursor = readCursor == null ? null : new RecordCursor(readCursor.position);
+
+        @Override
+        public boolean hasNext() {
+            return headIndex < headCount || fileRemaining > 0;
+        }
+
+        @Override
+        public String next() {
+            if (headIndex < headCount) {
+                return head[(headStart + headIndex++) % head.length];
+            }
+            if (fileRemaining == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                fileRemaining--;
+                return cursor.next();
+            } catch (IOException e) {
+                throw new UncheckedIOException(MessageFormat.format("Error reading from {0} backing store", MappedDiskQueue.class.getSimpleName()), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stream of uris that is filled by one or more collectors while it is being consumed.
+ *
+ * Collector threads call {@link #add(String)} for every uri they read and
+ * {@link #finish()} (or {@link #fail(Throwable)}) when all of them are done.
+ * The stream itself is an iterator for one consumer; {@link #hasNext()}
+ * blocks until a uri is available or the collectors are done.
+ * Uris that arrive faster than they are consumed are buffered in a
+ * {@link ConcurrentDiskQueue} so the collectors never have to wait.
+ */
+public class UriStream implements Iterator<String> {
+
+    private final ConcurrentDiskQueue buffer;
+    private final Iterator<String> consumer;
+
+    private final AtomicLong count = new AtomicLong();
+    private volatile Throwable error;
+
+    /**
+     * Construct a stream that keeps at most <code>maxInMemorySize</code>
+     * buffered uris in memory.
+     *
+     * @param maxInMemorySize Maximum number of buffered uris to keep in memory.
+     */
+    public UriStream(int maxInMemorySize) {
+        this.buffer = new ConcurrentDiskQueue(maxInMemorySize);
+        this.consumer = buffer.iterator();
+    }
+
+    /**
+     * Adds a uri to the end of the stream. Safe to call from several collector threads.
+     *
+     * @param uri the uri to add
+     */
+    public void add(String uri) {
+        buffer.add(uri);
+        count.incrementAndGet();
+    }
+
+    /**
+     * Marks the stream as complete. No more uris will be added.
+     */
+    public void finish() {
+        buffer.finish();
+    }
+
+    /**
+     * Marks the stream as complete because the collector failed.
+     *
+     * @param error the reason the collector failed
+     */
+    public void fail(Throwable error) {
+        this.error = error;
+        finish();
+    }
+
+    /**
+     * @return true once the collectors have finished, successfully or not
+     */
+    public boolean isFinished() {
+        return buffer.isFinished();
+    }
+
+    /**
+     * @return the error that stopped the collector, or null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return the number of uris added so far. This is the total once
+     * {@link #isFinished()} returns true.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (consumer.hasNext()) {
+            return true;
+        }
+        // the collectors are done and everything has been consumed
+        buffer.close();
+        return false;
+    }
+
+    @Override
+    public String next() {
+        return consumer.next();
+    }
+}
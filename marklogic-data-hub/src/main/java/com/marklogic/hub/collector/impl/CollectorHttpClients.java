@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector.impl;
+
+import com.marklogic.hub.metrics.HubMetrics;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared, pooled http clients for calling the collector endpoint.
+ *
+ * Building an http client, its credentials provider and its ssl setup is
+ * expensive, and a new client means a new tcp connection and tls handshake
+ * for every collector call. Clients are kept for the lifetime of the jvm,
+ * one per host, port, credentials and ssl settings, so connections are
+ * reused across jobs.
+ *
+ * The connections of each pool are published as gauges named
+ * <code>collector.pool.&lt;username@scheme://host:port&gt;.&lt;leased|available|pending|max&gt;</code>
+ * in {@link HubMetrics}. Leased connections are the ones in use, available
+ * connections are idle and can be reused, pending is the number of requests
+ * waiting for a connection and max is the size of the pool.
+ */
+public class CollectorHttpClients {
+
+    private static final Map<Key, PooledClient> clients = new ConcurrentHashMap<>();
+
+    private CollectorHttpClients() {}
+
+    /**
+     * Returns the pooled client for the given server and credentials, creating it if needed.
+     * The pool size and keep-alive of an existing client are updated to the given values.
+     *
+     * @param host - the host to connect to
+     * @param port - the port to connect to
+     * @param username - the user to authenticate as
+     * @param password - the user's password
+     * @param sslContext - the ssl context to use, or null for http
+     * @param hostnameVerifier - the hostname verifier to use with ssl, or null for the default.
+     *                         Must implement equals if it is not a shared instance.
+     * @param poolSize - the maximum number of open connections to the host
+     * @param keepAliveSeconds - how long an idle connection is kept open
+     * @return the pooled client
+     */
+    public static CloseableHttpClient get(String host, int port, String username, String password,
+                                          SSLContext sslContext, HostnameVerifier hostnameVerifier,
+                                          int poolSize, int keepAliveSeconds) {
+        Key key = new Key(host, port, username, password, sslContext, hostnameVerifier);
+        PooledClient client = clients.computeIfAbsent(key, PooledClient::new);
+        client.configure(poolSize, keepAliveSeconds);
+        return client.httpClient;
+    }
+
+    /**
+     * Closes every client and its open connections. Clients are created again when next needed.
+     */
+    public static void closeAll() {
+        clients.keySet().forEach(key -> {
+            PooledClient client = clients.remove(key);
+            if (client != null) {
+                client.close();
+            }
+        });
+    }
+
+    private static class PooledClient {
+        final PoolingHttpClientConnectionManager connectionManager;
+        final CloseableHttpClient httpClient;
+        final String metricPrefix;
+        volatile long keepAliveMillis;
+
+        PooledClient(Key key) {
+            RegistryBuilder<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory());
+            if (key.sslContext != null) {
+                registry.register("https", key.hostnameVerifier != null ?
+                    new SSLConnectionSocketFactory(key.sslContext, key.hostnameVerifier) :
+                    new SSLConnectionSocketFactory(key.sslContext));
+            }
+            Registry<ConnectionSocketFactory> socketFactories = registry.build();
+            connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+
+            BasicCredentialsProvider prov = new BasicCredentialsProvider();
+            prov.setCredentials(
+                new AuthScope(key.host, key.port, AuthScope.ANY_REALM),
+                new UsernamePasswordCredentials(key.username, key.password));
+
+            httpClient = HttpClientBuilder.create()
+                .setDefaultCredentialsProvider(prov)
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(new KeepAliveStrategy())
+                // gzip responses are decoded by CollectorResponseReader
+                .disableContentCompression()
+                .evictExpiredConnections()
+                .build();
+
+            metricPrefix = HubMetrics.COLLECTOR_POOL + "." + key + ".";
+            HubMetrics.gauge(metricPrefix + "leased", () -> connectionManager.getTotalStats().getLeased());
+            HubMetrics.gauge(metricPrefix + "available", () -> connectionManager.getTotalStats().getAvailable());
+            HubMetrics.gauge(metricPrefix + "pending", () -> connectionManager.getTotalStats().getPending());
+            HubMetrics.gauge(metricPrefix + "max", () -> connectionManager.getTotalStats().getMax());
+        }
+
+        void configure(int poolSize, int keepAliveSeconds) {
+            // every connection of the pool goes to the same host
+            if (connectionManager.getMaxTotal() != poolSize) {
+                connectionManager.setMaxTotal(poolSize);
+                connectionManager.setDefaultMaxPerRoute(poolSize);
+            }
+            keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+        }
+
+        void close() {
+            for (String stat : new String[] { "leased", "available", "pending", "max" }) {
+                HubMetrics.remove(metricPrefix + stat);
+            }
+            try {
+                httpClient.close();
+            }
+            catch(IOException e) {
+                // nothing left to release
+            }
+        }
+
+        /**
+         * Keeps connections open for the configured time, or less if the server asks for it.
+         */
+        private class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long keepAlive = keepAliveMillis;
+                HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+                while (it.hasNext()) {
+                    HeaderElement element = it.nextElement();
+                    if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                        try {
+                            keepAlive = Math.min(keepAlive, Long.parseLong(element.getValue()) * 1000);
+                        }
+                        catch(NumberFormatException e) {
+                            // ignore a malformed header
+                        }
+                    }
+                }
+                return keepAlive;
+            }
+        }
+    }
+
+    private static class Key {
+        final String host;
+        final int port;
+        final String username;
+        final String password;
+        final SSLContext sslContext;
+        final HostnameVerifier hostnameVerifier;
+
+        Key(String host, int port, String username, String password, SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+            this.host = host;
+            this.port = port;
+            this.username = username;
+            this.password = password;
+            this.sslContext = sslContext;
+            this.hostnameVerifier = hostnameVerifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return port == key.port &&
+                Objects.equals(host, key.host) &&
+                Objects.equals(username, key.username) &&
+                Objects.equals(password, key.password) &&
+                sslContext == key.sslContext &&
+                Objects.equals(hostnameVerifier, key.hostnameVerifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port, username, password, System.identityHashCode(sslContext), hostnameVerifier);
+        }
+
+        @Override
+        public String toString() {
+            // never include the password
+            return String.format("%s@%s://%s:%d", username, sslContext != null ? "https" : "http", host, port);
+        }
+    }
+}
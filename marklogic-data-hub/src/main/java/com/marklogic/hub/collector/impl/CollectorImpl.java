@@ -5,19 +5,17 @@ import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.datamovement.Forest;
 import com.marklogic.hub.HubConfig;
 import com.marklogic.hub.collector.Collector;
 import com.marklogic.hub.collector.DiskQueue;
+import com.marklogic.hub.collector.UriStream;
 import com.marklogic.hub.flow.CodeFormat;
+import com.marklogic.hub.metrics.Counter;
+import com.marklogic.hub.metrics.HubMetrics;
 import com.marklogic.rest.util.MgmtResponseErrorHandler;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpClient;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
@@ -31,10 +29,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.security.cert.Certificate;
@@ -44,6 +39,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class CollectorImpl implements Collector {
     private DatabaseClient client = null;
@@ -51,6 +51,7 @@ public class CollectorImpl implements Collector {
     private CodeFormat codeFormat;
 
     private String module;
+    private boolean forestAware = false;
 
     public CollectorImpl() {}
 
@@ -59,6 +60,11 @@ public class CollectorImpl implements Collector {
         this.codeFormat = codeFormat;
     }
 
+    public CollectorImpl(String module, CodeFormat codeFormat, boolean forestAware) {
+        this(module, codeFormat);
+        this.forestAware = forestAware;
+    }
+
 
     @Override
     public void setHubConfig(HubConfig config) { this.hubConfig = config; }
@@ -88,48 +94,16 @@ public class CollectorImpl implements Collector {
         return this.module;
     }
 
+    @Override
+    public boolean isForestAware() {
+        return forestAware;
+    }
+
     @Override
     public DiskQueue<String> run(String jobId, String entity, String flow, int threadCount, Map<String, Object> options) {
         try {
             DiskQueue<String> results = new DiskQueue<>(5000);
-
-            // Important design info:
-            // The collector is invoked with a regular http client due to streaming limitations in OkHttp.
-            // https://github.com/marklogic-community/marklogic-data-hub/issues/632
-            // https://github.com/marklogic-community/marklogic-data-hub/issues/633
-            //
-            AppConfig appConfig = hubConfig.getAppConfig();
-
-            RestTemplate template = newRestTemplate(appConfig.getAppServicesUsername(), appConfig.getAppServicesPassword());
-            String uriString = String.format(
-                "%s://%s:%d%s?job-id=%s&entity-name=%s&flow-name=%s&database=%s",
-                client.getSecurityContext().getSSLContext() != null ? "https" : "http",
-                client.getHost(),
-                client.getPort(),
-                "/com.marklogic.hub/endpoints/collector.xqy",
-                URLEncoder.encode(jobId, "UTF-8"),
-                URLEncoder.encode(entity, "UTF-8"),
-                URLEncoder.encode(flow, "UTF-8"),
-                URLEncoder.encode(client.getDatabase(), "UTF-8")
-            );
-
-            if (options != null) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                uriString += "&options=" + URLEncoder.encode(objectMapper.writeValueAsString(options), "UTF-8");
-            }
-            URI uri = new URI(uriString);
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Accept", MediaType.TEXT_PLAIN_VALUE);
-            Resource responseBody = template.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), Resource.class).getBody();
-            if(responseBody != null) {
-                InputStream inputStream = responseBody.getInputStream();
-                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-                String line;
-                while((line = bufferedReader.readLine()) != null) {
-                    results.add(line);
-                }
-                inputStream.close();
-            }
+            collect(jobId, entity, flow, options, client.getHost(), null, results::add);
             return results;
         }
         catch(Exception e) {
@@ -138,29 +112,141 @@ public class CollectorImpl implements Collector {
         }
     }
 
-    private RestTemplate newRestTemplate(String username, String password) {
-        DatabaseClientFactory.SecurityContext securityContext = client.getSecurityContext();
+    @Override
+    public UriStream stream(String jobId, String entity, String flow, int threadCount, Map<String, Object> options) {
+        UriStream results = new UriStream(5000);
+        Thread collectorThread = new Thread(() -> {
+            try {
+                collect(jobId, entity, flow, options, client.getHost(), null, results::add);
+                results.finish();
+            }
+            catch(Exception e) {
+                results.fail(e);
+            }
+        }, "collector-" + jobId);
+        collectorThread.setDaemon(true);
+        collectorThread.start();
+        return results;
+    }
 
-        BasicCredentialsProvider prov = new BasicCredentialsProvider();
-        prov.setCredentials(
-            new AuthScope(client.getHost(), client.getPort(), AuthScope.ANY_REALM),
-            new UsernamePasswordCredentials(username, password));
+    @Override
+    public UriStream stream(String jobId, String entity, String flow, int threadCount, Map<String, Object> options, Forest[] forests) {
+        UriStream results = new UriStream(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, forests.length)), runnable -> {
+            Thread thread = new Thread(runnable, "collector-" + jobId);
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create().setDefaultCredentialsProvider(prov);
+        // each forest is collected on the host that holds it
+        List<Future<?>> partitions = new ArrayList<>();
+        for (Forest forest : forests) {
+            partitions.add(executor.submit(() -> {
+                collect(jobId, entity, flow, options, forest.getPreferredHost(), forest.getForestId(), results::add);
+                return null;
+            }));
+        }
+        executor.shutdown();
 
-        if (securityContext != null) {
-            SSLContext sslContext = securityContext.getSSLContext();
-            if (sslContext != null) {
-                httpClientBuilder.setSslcontext(sslContext);
+        Thread collectorThread = new Thread(() -> {
+            try {
+                for (Future<?> partition : partitions) {
+                    partition.get();
+                }
+                results.finish();
+            }
+            catch(ExecutionException e) {
+                executor.shutdownNow();
+                results.fail(e.getCause());
+            }
+            catch(InterruptedException e) {
+                executor.shutdownNow();
+                results.fail(e);
             }
+        }, "collector-" + jobId);
+        collectorThread.setDaemon(true);
+        collectorThread.start();
+        return results;
+    }
+
+    private void collect(String jobId, String entity, String flow, Map<String, Object> options, String host, String forestId, Consumer<String> consumer) throws Exception {
+        // Important design info:
+        // The collector is invoked with a regular http client due to streaming limitations in OkHttp.
+        // https://github.com/marklogic-community/marklogic-data-hub/issues/632
+        // https://github.com/marklogic-community/marklogic-data-hub/issues/633
+        //
+        AppConfig appConfig = hubConfig.getAppConfig();
+
+        RestTemplate template = newRestTemplate(host, appConfig.getAppServicesUsername(), appConfig.getAppServicesPassword());
+        String uriString = String.format(
+            "%s://%s:%d%s?job-id=%s&entity-name=%s&flow-name=%s&database=%s",
+            client.getSecurityContext().getSSLContext() != null ? "https" : "http",
+            host,
+            client.getPort(),
+            "/com.marklogic.hub/endpoints/collector.xqy",
+            URLEncoder.encode(jobId, "UTF-8"),
+            URLEncoder.encode(entity, "UTF-8"),
+            URLEncoder.encode(flow, "UTF-8"),
+            URLEncoder.encode(client.getDatabase(), "UTF-8")
+        );
+
+        if (forestId != null) {
+            uriString += "&forest-id=" + URLEncoder.encode(forestId, "UTF-8");
+        }
+
+        if (options != null) {
+            ObjectMapper objectMapper = new ObjectMapper();
+            uriString += "&options=" + URLEncoder.encode(objectMapper.writeValueAsString(options), "UTF-8");
+        }
+        URI uri = new URI(uriString);
+        boolean compress = hubConfig.getCollectorCompression();
+        Counter collectedUris = HubMetrics.counter(HubMetrics.COLLECTOR_URIS);
+        long start = System.nanoTime();
+        try {
+            // read the uris while the response arrives rather than buffering the whole body
+            template.execute(uri, HttpMethod.GET,
+                request -> {
+                    request.getHeaders().set(HttpHeaders.ACCEPT, MediaType.TEXT_PLAIN_VALUE);
+                    if (compress) {
+                        request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, CollectorResponseReader.GZIP);
+                    }
+                },
+                response -> CollectorResponseReader.read(
+                    response.getBody(),
+                    response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING),
+                    collected -> {
+                        collectedUris.increment();
+                        consumer.accept(collected);
+                    })
+            );
+        }
+        catch(RuntimeException e) {
+            HubMetrics.counter(HubMetrics.COLLECTOR_FAILURES).increment();
+            throw e;
+        }
+        finally {
+            HubMetrics.timer(HubMetrics.COLLECTOR_CALLS).recordSince(start);
+        }
+    }
+
+    private RestTemplate newRestTemplate(String host, String username, String password) {
+        DatabaseClientFactory.SecurityContext securityContext = client.getSecurityContext();
+
+        SSLContext sslContext = null;
+        HostnameVerifierAdapter hostnameVerifierAdapter = null;
+        if (securityContext != null) {
+            sslContext = securityContext.getSSLContext();
 
             DatabaseClientFactory.SSLHostnameVerifier hostnameVerifier = securityContext.getSSLHostnameVerifier();
             if (hostnameVerifier != null) {
-                httpClientBuilder.setHostnameVerifier(new HostnameVerifierAdapter(hostnameVerifier));
+                hostnameVerifierAdapter = new HostnameVerifierAdapter(hostnameVerifier);
             }
         }
 
-        HttpClient client = httpClientBuilder.build();
+        // the http client and its connections are shared by every collector call to the same host
+        HttpClient client = CollectorHttpClients.get(host, this.client.getPort(), username, password,
+            sslContext, hostnameVerifierAdapter,
+            hubConfig.getCollectorPoolSize(), hubConfig.getCollectorKeepAlive());
 
         RestTemplate rt = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
         rt.setErrorHandler(new MgmtResponseErrorHandler());
@@ -225,5 +311,15 @@ public class CollectorImpl implements Collector {
 
         @Override
         public void verify(String host, String[] cns, String[] subjectAlts) throws SSLException {}
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof HostnameVerifierAdapter && verifier.equals(((HostnameVerifierAdapter) o).verifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return verifier.hashCode();
+        }
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads the uris of a collector response, one per line, as they arrive.
+ *
+ * The response may be gzip encoded, as a series of gzip members that are
+ * each compressed on the server separately. Both the decompressor and the line
+ * reader use large buffers; the defaults (512 bytes and 8k chars) make
+ * reading tens of millions of uris dominated by per-call overhead.
+ */
+public class CollectorResponseReader {
+
+    public static final String GZIP = "gzip";
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int CHAR_BUFFER_SIZE = 1024 * 1024;
+
+    private CollectorResponseReader() {}
+
+    /**
+     * Opens a reader over a collector response body.
+     *
+     * @param body - the response body
+     * @param contentEncoding - the Content-Encoding of the response, or null if it is not encoded
+     * @return a reader that returns one uri per line
+     * @throws IOException if the response cannot be opened
+     */
+    public static BufferedReader open(InputStream body, String contentEncoding) throws IOException {
+        InputStream in = body;
+        if (contentEncoding != null && GZIP.equalsIgnoreCase(contentEncoding.trim())) {
+            in = new GzipMembersInputStream(body, INPUT_BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), CHAR_BUFFER_SIZE);
+    }
+
+    /**
+     * Passes every uri of a collector response to the consumer, then closes the body.
+     *
+     * @param body - the response body
+     * @param contentEncoding - the Content-Encoding of the response, or null if it is not encoded
+     * @param consumer - receives each uri
+     * @return the number of uris read
+     * @throws IOException if the response cannot be read
+     */
+    public static long read(InputStream body, String contentEncoding, Consumer<String> consumer) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = open(body, contentEncoding)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    consumer.accept(line);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
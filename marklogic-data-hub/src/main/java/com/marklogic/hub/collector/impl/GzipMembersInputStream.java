@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.collector.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a stream of gzip members, such as the chunks the collector
+ * endpoint sends, as one continuous stream.
+ *
+ * Unlike {@link java.util.zip.GZIPInputStream}, which silently stops at the
+ * first bytes that are not a gzip header, this skips whitespace between
+ * members, since the server may separate the items of a response with a
+ * newline, and fails on anything else.
+ */
+class GzipMembersInputStream extends InputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final PushbackInputStream in;
+    private final byte[] buffer;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    // bytes last handed to the inflater, the tail of which may belong to the next member
+    private int lastRead = 0;
+
+    private boolean inMember = false;
+    private boolean eof = false;
+
+    GzipMembersInputStream(InputStream in, int bufferSize) {
+        this.in = new PushbackInputStream(in, bufferSize);
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (!eof) {
+            if (!inMember) {
+                if (!readHeader()) {
+                    eof = true;
+                    break;
+                }
+                continue;
+            }
+
+            try {
+                int n = inflater.inflate(b, off, len);
+                if (n > 0) {
+                    crc.update(b, off, n);
+                    return n;
+                }
+            }
+            catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+
+            if (inflater.finished()) {
+                int remaining = inflater.getRemaining();
+                if (remaining > 0) {
+                    in.unread(buffer, lastRead - remaining, remaining);
+                }
+                readTrailer();
+                inMember = false;
+            }
+            else if (inflater.needsDictionary()) {
+                throw new ZipException("gzip member needs a preset dictionary");
+            }
+            else if (inflater.needsInput()) {
+                lastRead = in.read(buffer, 0, buffer.length);
+                if (lastRead == -1) {
+                    throw new EOFException("Unexpected end of gzip member");
+                }
+                inflater.setInput(buffer, 0, lastRead);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    // returns false at the end of the stream
+    private boolean readHeader() throws IOException {
+        int b;
+        do {
+            b = in.read();
+        } while (b == '\n' || b == '\r' || b == ' ' || b == '\t');
+        if (b == -1) {
+            return false;
+        }
+        in.unread(b);
+
+        if (readUShort() != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readUByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readUByte();
+        skipBytes(6);
+        if ((flags & FEXTRA) == FEXTRA) {
+            skipBytes(readUShort());
+        }
+        if ((flags & FNAME) == FNAME) {
+            while (readUByte() != 0) ;
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            while (readUByte() != 0) ;
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            skipBytes(2);
+        }
+
+        inflater.reset();
+        crc.reset();
+        inMember = true;
+        return true;
+    }
+
+    private void readTrailer() throws IOException {
+        long expectedCrc = readUInt();
+        long expectedSize = readUInt();
+        if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip trailer");
+        }
+    }
+
+    private long readUInt() throws IOException {
+        long low = readUShort();
+        return ((long) readUShort() << 16) | low;
+    }
+
+    private int readUShort() throws IOException {
+        int low = readUByte();
+        return (readUByte() << 8) | low;
+    }
+
+    private int readUByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of gzip header");
+        }
+        return b;
+    }
+
+    private void skipBytes(int n) throws IOException {
+        while (n-- > 0) {
+            readUByte();
+        }
+    }
+}
@@ -28,6 +28,8 @@ import com.marklogic.hub.HubConfig;
 import com.marklogic.hub.deploy.util.HubFileFilter;
 import com.marklogic.hub.error.LegacyFlowsException;
 import com.marklogic.hub.flow.Flow;
+import com.marklogic.hub.metrics.Counter;
+import com.marklogic.hub.metrics.HubMetrics;
 import org.apache.commons.io.IOUtils;
 import org.springframework.core.io.Resource;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -38,10 +40,13 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import java.util.regex.Pattern;
 
 public class LoadUserModulesCommand extends AbstractCommand {
 
+    public static final String FLOW_CACHE_VERSION_URI = "/com.marklogic.hub/settings/flow-cache-version.xml";
+
     private HubConfig hubConfig;
     private DocumentPermissionsParser documentPermissionsParser = new DefaultDocumentPermissionsParser();
     private ThreadPoolTaskExecutor threadPoolTaskExecutor;
@@ -118,6 +123,16 @@ public class LoadUserModulesCommand extends AbstractCommand {
 
     @Override
     public void execute(CommandContext context) {
+        long start = System.nanoTime();
+        try {
+            loadUserModules(context);
+        }
+        finally {
+            HubMetrics.timer(HubMetrics.MODULE_LOADS).recordSince(start);
+        }
+    }
+
+    private void loadUserModules(CommandContext context) {
         FlowManager flowManager = new FlowManager(hubConfig);
         List<String> legacyFlows = flowManager.getLegacyFlows();
         if (legacyFlows.size() > 0) {
@@ -136,7 +151,8 @@ public class LoadUserModulesCommand extends AbstractCommand {
         // load any user files under plugins/* int the modules database.
         // this will ignore REST folders under entities
         DefaultModulesLoader modulesLoader = getStagingModulesLoader(config);
-        modulesLoader.loadModules(baseDir, new UserModulesFinder(), stagingClient);
+        Counter modulesLoaded = HubMetrics.counter(HubMetrics.MODULES_LOADED);
+        modulesLoaded.increment(modulesLoader.loadModules(baseDir, new UserModulesFinder(), stagingClient).size());
 
         JSONDocumentManager entityDocMgr = finalClient.newJSONDocumentManager();
 
@@ -165,12 +181,12 @@ public class LoadUserModulesCommand extends AbstractCommand {
 
                         // for REST dirs we need to deploy all the REST stuff (transforms, options, services, etc)
                         if (isInputRestDir(dir)) {
-                            modulesLoader.loadModules(currentDir, allButAssetsModulesFinder, stagingClient);
+                            modulesLoaded.increment(modulesLoader.loadModules(currentDir, allButAssetsModulesFinder, stagingClient).size());
                             return FileVisitResult.SKIP_SUBTREE;
                         }
                         // for harmonize dir we put stuff in final
                         else if (isHarmonizeRestDir(dir)) {
-                            modulesLoader.loadModules(currentDir, allButAssetsModulesFinder, finalClient);
+                            modulesLoaded.increment(modulesLoader.loadModules(currentDir, allButAssetsModulesFinder, finalClient).size());
                             return FileVisitResult.SKIP_SUBTREE;
                         }
                         else if (isEntityDir(dir, startPath.toAbsolutePath())) {
@@ -184,6 +200,7 @@ public class LoadUserModulesCommand extends AbstractCommand {
                                     StringHandle handle = new StringHandle(IOUtils.toString(inputStream));
                                     inputStream.close();
                                     entityDocMgr.write("/entities/" + r.getFilename(), meta, handle);
+                                    modulesLoaded.increment();
                                     modulesManager.saveLastLoadedTimestamp(r.getFile(), new Date());
                                 }
                             }
@@ -218,6 +235,30 @@ public class LoadUserModulesCommand extends AbstractCommand {
             e.printStackTrace();
             throw new RuntimeException(e);
         }
+
+        DocumentMetadataHandle meta = new DocumentMetadataHandle();
+        documentPermissionsParser.parsePermissions(hubConfig.getModulePermissions(), meta.getPermissions());
+        try {
+            updateFlowCacheVersion(hubConfig.newModulesDbClient(), meta);
+        }
+        catch(Exception e) {
+            // cached flows expire on their own within a minute
+            logger.warn("Unable to update the flow cache version, cause: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells every app server that flows or plugins have changed. Flows they
+     * cached under the previous version are dropped the next time they are used.
+     *
+     * @param modulesClient - a client for the modules database
+     * @param meta - the permissions of the version document, or null for the defaults
+     */
+    public static void updateFlowCacheVersion(DatabaseClient modulesClient, DocumentMetadataHandle meta) {
+        StringHandle handle = new StringHandle(
+            "<flow-cache-version xmlns=\"http://marklogic.com/data-hub\">" + UUID.randomUUID() + "</flow-cache-version>");
+        handle.setFormat(Format.XML);
+        modulesClient.newXMLDocumentManager().write(FLOW_CACHE_VERSION_URI, meta, handle);
     }
 }
 
@@ -71,8 +71,9 @@ public class FlowBuilder {
     public Flow build() {
 
         if (flow.getCollector() == null && flow.getType().equals(FlowType.HARMONIZE)) {
+            // the scaffolded collector passes forestIds on to cts:uris
             String collectorModule = "collector." + flow.getCodeFormat().toString();
-            flow.setCollector(new CollectorImpl(collectorModule, flow.getCodeFormat()));
+            flow.setCollector(new CollectorImpl(collectorModule, flow.getCodeFormat(), true));
         }
 
         if (flow.getMain() == null) {
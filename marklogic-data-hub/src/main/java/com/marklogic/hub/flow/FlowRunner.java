@@ -16,6 +16,77 @@ public interface FlowRunner {
     FlowRunner withOptions(Map<String, Object> options);
     FlowRunner withStopOnFailure(boolean stopOnFailure);
 
+    /**
+     * When enabled, batches are sent to the flow as soon as the collector
+     * has returned enough uris to fill them instead of waiting for the
+     * collector to finish. Progress percentages are only reported once the
+     * collector is done and the total is known.
+     *
+     * @param streamingCollector - true to stream the collector results
+     * @return the flow runner
+     */
+    FlowRunner withStreamingCollector(boolean streamingCollector);
+
+    /**
+     * When enabled, the collector runs once per forest of the source database,
+     * in parallel, on the host that holds the forest. The results are streamed
+     * as with {@link #withStreamingCollector(boolean)}. Only collectors that are
+     * declared forest aware (see {@link com.marklogic.hub.collector.Collector#isForestAware()})
+     * are partitioned; any other collector runs once, as if this were disabled.
+     *
+     * @param partitionedCollector - true to run the collector per forest
+     * @return the flow runner
+     */
+    FlowRunner withPartitionedCollector(boolean partitionedCollector);
+
+    /**
+     * Sets how often the progress of a harmonize job is checkpointed to the
+     * job document so that the job can be resumed with {@link #resume(String)}.
+     * Defaults to 30 seconds. Jobs that use a partitioned collector are not
+     * checkpointed, because the order of their uris changes from run to run.
+     *
+     * @param interval - the time between checkpoints, or 0 to turn checkpoints off
+     * @param unit - the time unit of the interval
+     * @return the flow runner
+     */
+    FlowRunner withCheckpointInterval(long interval, TimeUnit unit);
+
+    /**
+     * Sets how often the success and failure counts of a running harmonize job
+     * are written to the job document. Defaults to 5 seconds. The job document
+     * is written on a background thread, so batches never wait for it.
+     *
+     * @param interval - the time between progress updates, or 0 to only write the counts at the end
+     * @param unit - the time unit of the interval
+     * @return the flow runner
+     */
+    FlowRunner withProgressInterval(long interval, TimeUnit unit);
+
+    /**
+     * When enabled, the batch size and the number of batches in flight are
+     * tuned while the job runs to get the most documents per second, and are
+     * backed off when flow calls fail, slow down or start returning more errors.
+     * The configured batch size and thread count are the starting point, and
+     * neither grows beyond four times its starting value.
+     *
+     * @param adaptiveBatching - true to tune the batch size and thread count
+     * @return the flow runner
+     */
+    FlowRunner withAdaptiveBatching(boolean adaptiveBatching);
+
+    /**
+     * When enabled, the writer outputs of a whole batch are committed to the
+     * destination database in a single transaction instead of one transaction
+     * per item. If a writer fails, the batch is rolled back and its writes are
+     * run again one transaction each, so failed writes are still reported per
+     * item and leave nothing behind. Writers in the same batch can not see each
+     * other's documents.
+     *
+     * @param batchedWrites - true to commit the writes of each batch together
+     * @return the flow runner
+     */
+    FlowRunner withBatchedWrites(boolean batchedWrites);
+
     FlowRunner onItemComplete(FlowItemCompleteListener listener);
     FlowRunner onItemFailed(FlowItemFailureListener listener);
 
@@ -38,4 +109,18 @@ public interface FlowRunner {
     void awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException;
 
     JobTicket run();
+
+    /**
+     * Runs a job again that did not finish, skipping the uris that were
+     * processed before its last checkpoint. The runner must be set up with
+     * the same flow and options as the original run.
+     *
+     * The collector runs again and has to return the same uris, in the same
+     * order, up to the checkpoint; otherwise the job fails without processing
+     * anything. Uris after the checkpoint may be processed a second time.
+     *
+     * @param jobId - the id of the job to resume
+     * @return the job ticket
+     */
+    JobTicket resume(String jobId);
 }
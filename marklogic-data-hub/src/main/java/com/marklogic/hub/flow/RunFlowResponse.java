@@ -3,6 +3,7 @@ package com.marklogic.hub.flow;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.List;
+import java.util.Map;
 
 public class RunFlowResponse {
     public long totalCount = 0;
@@ -10,6 +11,8 @@ public class RunFlowResponse {
     public List<String> completedItems;
     public List<String> failedItems;
     public List<JsonNode> errors;
+    // milliseconds spent on the server in each kind of plugin, by plugin label
+    public Map<String, Double> timings;
 
     public String toString() {
         return "{totalCount: " + totalCount + ", errorCount: " + errorCount + ", completedItems: " + completedItems.size() + ", failedItems: " + failedItems.size() + ", errors: " + errors.size() + "}";
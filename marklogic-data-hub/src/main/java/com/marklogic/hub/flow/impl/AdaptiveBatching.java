@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.flow.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Tunes the batch size and the number of batches in flight while a
+ * harmonize job runs.
+ *
+ * Every flow call is measured. Once a window of calls has finished, the
+ * documents per second of that window are compared with the previous one:
+ * a change that helped is pushed further, a change that hurt is undone,
+ * and when nothing changes the other setting is tried. The batch size moves
+ * by a factor of 1.5 and the concurrency by one batch.
+ *
+ * Signs of an overloaded cluster back off at once: calls that fail,
+ * batches slower than {@link #MAX_BATCH_LATENCY}, or an item error rate
+ * well above the lowest rate seen so far halve the batch size and take
+ * away one batch in flight.
+ */
+class AdaptiveBatching {
+
+    static final long MAX_BATCH_LATENCY = TimeUnit.SECONDS.toNanos(30);
+
+    private static final long MIN_WINDOW = TimeUnit.SECONDS.toNanos(2);
+    private static final int MIN_WINDOW_CALLS = 4;
+    private static final double SIGNIFICANT_CHANGE = 0.05;
+    private static final double ERROR_RATE_MARGIN = 0.1;
+    private static final double BATCH_SIZE_STEP = 1.5;
+
+    private static final int BATCH_SIZE = 0;
+    private static final int CONCURRENCY = 1;
+
+    private final int maxBatchSize;
+    private final int maxConcurrency;
+    private final LongSupplier clock;
+
+    private volatile int batchSize;
+    private volatile int concurrency;
+    private int inFlight = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotAvailable = lock.newCondition();
+
+    // the current window
+    private long windowStart;
+    private int windowCalls = 0;
+    private int windowFailedCalls = 0;
+    private long windowItems = 0;
+    private long windowErrors = 0;
+    private long windowLatency = 0;
+
+    private double lastThroughput = 0;
+    private double lowestErrorRate = 1;
+    // the first move is to the batch size
+    private int dimension = CONCURRENCY;
+    private int lastMoved = -1;
+    private final int[] direction = { 1, 1 };
+
+    AdaptiveBatching(int batchSize, int concurrency, int maxBatchSize, int maxConcurrency) {
+        this(batchSize, concurrency, maxBatchSize, maxConcurrency, System::nanoTime);
+    }
+
+    AdaptiveBatching(int batchSize, int concurrency, int maxBatchSize, int maxConcurrency, LongSupplier clock) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.batchSize = clamp(batchSize, this.maxBatchSize);
+        this.concurrency = clamp(concurrency, this.maxConcurrency);
+        this.clock = clock;
+        this.windowStart = clock.getAsLong();
+    }
+
+    /**
+     * @return the number of uris to send in the next flow call
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of flow calls allowed in flight
+     */
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Waits until another flow call may start.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= concurrency) {
+                slotAvailable.await();
+            }
+            inFlight++;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a finished flow call and frees its slot.
+     *
+     * @param items - the number of uris sent
+     * @param errors - the number of uris that failed
+     * @param latency - how long the call took, in nanoseconds
+     * @param failed - true if the call itself failed
+     */
+    void release(int items, long errors, long latency, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            windowCalls++;
+            windowItems += items;
+            windowErrors += failed ? items : errors;
+            windowLatency += latency;
+            if (failed) {
+                windowFailedCalls++;
+            }
+
+            long now = clock.getAsLong();
+            if (windowCalls >= Math.max(MIN_WINDOW_CALLS, concurrency) && now - windowStart >= MIN_WINDOW) {
+                adjust(now);
+            }
+            slotAvailable.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjust(long now) {
+        double throughput = (windowItems - windowErrors) / ((double) (now - windowStart) / TimeUnit.SECONDS.toNanos(1));
+        double errorRate = windowItems > 0 ? (double) windowErrors / windowItems : 0;
+        long meanLatency = windowLatency / windowCalls;
+
+        if (windowFailedCalls > 0 || meanLatency > MAX_BATCH_LATENCY || errorRate > lowestErrorRate + ERROR_RATE_MARGIN) {
+            batchSize = clamp(batchSize / 2, maxBatchSize);
+            concurrency = clamp(concurrency - 1, maxConcurrency);
+            lastMoved = -1;
+        }
+        else {
+            lowestErrorRate = Math.min(lowestErrorRate, errorRate);
+            if (lastMoved >= 0 && throughput < lastThroughput * (1 - SIGNIFICANT_CHANGE)) {
+                // the last move hurt. undo it and go the other way next time
+                direction[lastMoved] = -direction[lastMoved];
+                move(lastMoved);
+                lastMoved = -1;
+            }
+            else if (lastMoved >= 0 && throughput > lastThroughput * (1 + SIGNIFICANT_CHANGE)) {
+                // the last move helped. keep going
+                if (!move(lastMoved)) {
+                    lastMoved = -1;
+                }
+            }
+            else {
+                // no change, or no move yet. try the other setting
+                dimension = 1 - dimension;
+                if (!move(dimension)) {
+                    direction[dimension] = -direction[dimension];
+                    lastMoved = -1;
+                }
+                else {
+                    lastMoved = dimension;
+                }
+            }
+        }
+
+        lastThroughput = throughput;
+        windowStart = now;
+        windowCalls = 0;
+        windowFailedCalls = 0;
+        windowItems = 0;
+        windowErrors = 0;
+        windowLatency = 0;
+    }
+
+    /**
+     * @return false if the setting was already at its limit
+     */
+    private boolean move(int setting) {
+        if (setting == BATCH_SIZE) {
+            int next = direction[BATCH_SIZE] > 0 ?
+                Math.max(batchSize + 1, (int) (batchSize * BATCH_SIZE_STEP)) :
+                Math.min(batchSize - 1, (int) (batchSize / BATCH_SIZE_STEP));
+            next = clamp(next, maxBatchSize);
+            boolean moved = next != batchSize;
+            batchSize = next;
+            return moved;
+        }
+        int next = clamp(concurrency + direction[CONCURRENCY], maxConcurrency);
+        boolean moved = next != concurrency;
+        concurrency = next;
+        return moved;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(1, Math.min(max, value));
+    }
+}
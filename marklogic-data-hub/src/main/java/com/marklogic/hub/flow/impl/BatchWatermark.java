@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.flow.impl;
+
+import com.marklogic.hub.job.JobCheckpoint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the unbroken run of finished batches of a harmonize job.
+ *
+ * The QueryBatcher numbers batches in the order it reads uris from the
+ * collector, but runs them on several threads, so they finish out of order.
+ * Batches that finish ahead of the watermark are held until the ones
+ * before them are done.
+ */
+class BatchWatermark {
+
+    private long watermark;
+    private long uriOffset;
+    private String lastUri;
+    private long successfulEvents;
+    private long failedEvents;
+    private long successfulBatches;
+    private long failedBatches;
+
+    // batch numbers of this run start at 1, after the batches of the checkpoint
+    private final long batchNumberBase;
+    private final Map<Long, FinishedBatch> finishedAhead = new HashMap<>();
+    private boolean stalled = false;
+
+    BatchWatermark(JobCheckpoint start) {
+        if (start != null) {
+            watermark = start.getBatchWatermark();
+            uriOffset = start.getUriOffset();
+            lastUri = start.getLastUri();
+            successfulEvents = start.getSuccessfulEvents();
+            failedEvents = start.getFailedEvents();
+            successfulBatches = start.getSuccessfulBatches();
+            failedBatches = start.getFailedBatches();
+        }
+        batchNumberBase = watermark;
+    }
+
+    /**
+     * Records a batch that ran through the flow, successfully or not.
+     *
+     * @param batchNumber - the job batch number assigned by the QueryBatcher
+     * @param items - the uris of the batch
+     * @param errorCount - how many of the items failed
+     */
+    synchronized void finished(long batchNumber, String[] items, long errorCount) {
+        if (stalled) {
+            return;
+        }
+        finishedAhead.put(batchNumberBase + batchNumber, new FinishedBatch(items, errorCount));
+        FinishedBatch next;
+        while ((next = finishedAhead.remove(watermark + 1)) != null) {
+            watermark++;
+            uriOffset += next.items.length;
+            if (next.items.length > 0) {
+                lastUri = next.items[next.items.length - 1];
+            }
+            successfulEvents += next.items.length - next.errorCount;
+            failedEvents += next.errorCount;
+            if (next.errorCount < next.items.length) {
+                successfulBatches++;
+            }
+            else {
+                failedBatches++;
+            }
+        }
+    }
+
+    /**
+     * Records a batch that could not be run at all. Its uris were never
+     * processed, so the watermark can not move past it for the rest of the job.
+     *
+     * @param batchNumber - the job batch number assigned by the QueryBatcher
+     */
+    synchronized void abandoned(long batchNumber) {
+        if (batchNumberBase + batchNumber > watermark) {
+            stalled = true;
+            finishedAhead.clear();
+        }
+    }
+
+    /**
+     * @return the number of batches, from the first, that have all finished
+     */
+    synchronized long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return a checkpoint of everything up to the watermark
+     */
+    synchronized JobCheckpoint checkpoint() {
+        return new JobCheckpoint(watermark, uriOffset, lastUri)
+            .setCounts(successfulEvents, failedEvents, successfulBatches, failedBatches);
+    }
+
+    private static class FinishedBatch {
+        final String[] items;
+        final long errorCount;
+
+        FinishedBatch(String[] items, long errorCount) {
+            this.items = items;
+            this.errorCount = errorCount;
+        }
+    }
+}
@@ -169,6 +169,9 @@ public class FlowImpl implements Flow {
                 serializer.writeStartElement("collector");
                 serializer.writeAttribute("code-format", collector.getCodeFormat().toString());
                 serializer.writeAttribute("module", flowDir + collector.getModule());
+                if (collector.isForestAware()) {
+                    serializer.writeAttribute("forest-aware", "true");
+                }
                 serializer.writeEndElement();
             }
 
@@ -206,6 +209,9 @@ public class FlowImpl implements Flow {
         if (this.collector != null) {
             flowProperties.setProperty("collectorCodeFormat", collector.getCodeFormat().toString());
             flowProperties.setProperty("collectorModule", collector.getModule());
+            if (collector.isForestAware()) {
+                flowProperties.setProperty("collectorForestAware", "true");
+            }
         }
 
         if (this.main != null) {
@@ -275,9 +281,11 @@ public class FlowImpl implements Flow {
                     flowBuilder.withEntityName(node.getTextContent());
                     break;
                 case "collector":
+                    Node forestAware = node.getAttributes().getNamedItem("forest-aware");
                     Collector collector = new CollectorImpl(
                         node.getAttributes().getNamedItem("module").getNodeValue(),
-                        CodeFormat.getCodeFormat(node.getAttributes().getNamedItem("code-format").getNodeValue())
+                        CodeFormat.getCodeFormat(node.getAttributes().getNamedItem("code-format").getNodeValue()),
+                        forestAware != null && Boolean.parseBoolean(forestAware.getNodeValue())
                     );
                     flowBuilder.withCollector(collector);
                     break;
@@ -29,31 +29,50 @@ import com.marklogic.client.util.RequestParameters;
 import com.marklogic.hub.HubConfig;
 import com.marklogic.hub.collector.Collector;
 import com.marklogic.hub.collector.DiskQueue;
+import com.marklogic.hub.collector.UriStream;
 import com.marklogic.hub.flow.*;
 import com.marklogic.hub.job.Job;
+import com.marklogic.hub.job.JobCheckpoint;
 import com.marklogic.hub.job.JobManager;
+import com.marklogic.hub.job.JobStatusWriter;
 import com.marklogic.hub.job.JobStatus;
+import com.marklogic.hub.metrics.Gauge;
+import com.marklogic.hub.metrics.HubMetrics;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.function.LongSupplier;
 
 public class FlowRunnerImpl implements FlowRunner {
 
     private static final int DEFAULT_BATCH_SIZE = 100;
     private static final int DEFAULT_THREAD_COUNT = 4;
     private static final int MAX_ERROR_MESSAGES = 10;
+    // the number of recent batches the latency percentiles are taken from
+    private static final int LATENCY_WINDOW = 1000;
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final long DEFAULT_PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final int ADAPTIVE_MAX_FACTOR = 4;
+
+    // thread-safe once configured, and expensive to create
+    private static final ObjectMapper objectMapper = new ObjectMapper();
     private Flow flow;
     private int batchSize = DEFAULT_BATCH_SIZE;
     private int threadCount = DEFAULT_THREAD_COUNT;
     private DatabaseClient sourceClient;
     private String destinationDatabase;
     private Map<String, Object> options;
-    private int previousPercentComplete;
     private boolean stopOnFailure = false;
+    private boolean streamingCollector = false;
+    private boolean partitionedCollector = false;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private boolean adaptiveBatching = false;
+    private boolean batchedWrites = false;
 
     private List<FlowItemCompleteListener> flowItemCompleteListeners = new ArrayList<>();
     private List<FlowItemFailureListener> flowItemFailureListeners = new ArrayList<>();
@@ -105,6 +124,42 @@ public class FlowRunnerImpl implements FlowRunner {
         return this;
     }
 
+    @Override
+    public FlowRunner withStreamingCollector(boolean streamingCollector) {
+        this.streamingCollector = streamingCollector;
+        return this;
+    }
+
+    @Override
+    public FlowRunner withPartitionedCollector(boolean partitionedCollector) {
+        this.partitionedCollector = partitionedCollector;
+        return this;
+    }
+
+    @Override
+    public FlowRunner withAdaptiveBatching(boolean adaptiveBatching) {
+        this.adaptiveBatching = adaptiveBatching;
+        return this;
+    }
+
+    @Override
+    public FlowRunner withBatchedWrites(boolean batchedWrites) {
+        this.batchedWrites = batchedWrites;
+        return this;
+    }
+
+    @Override
+    public FlowRunner withCheckpointInterval(long interval, TimeUnit unit) {
+        this.checkpointInterval = unit.toMillis(interval);
+        return this;
+    }
+
+    @Override
+    public FlowRunner withProgressInterval(long interval, TimeUnit unit) {
+        this.progressInterval = unit.toMillis(interval);
+        return this;
+    }
+
     @Override
     public FlowRunner withOptions(Map<String, Object> options) {
         this.options = options;
@@ -159,14 +214,50 @@ public class FlowRunnerImpl implements FlowRunner {
             .withJobId(jobId);
         jobManager.saveJob(job);
 
+        return run(job, jobManager, null);
+    }
+
+    @Override
+    public JobTicket resume(String jobId) {
+        JobManager jobManager = new JobManager(hubConfig.newJobDbClient());
+
+        Job job = jobManager.getJob(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("Job " + jobId + " does not exist");
+        }
+        if (!flow.getEntityName().equals(job.getEntityName()) || !flow.getName().equals(job.getFlowName())) {
+            throw new IllegalArgumentException("Job " + jobId + " ran flow " + job.getEntityName() + ":" + job.getFlowName() +
+                ", not " + flow.getEntityName() + ":" + flow.getName());
+        }
+        if (job.getStatus() == JobStatus.FINISHED) {
+            throw new IllegalStateException("Job " + jobId + " has already finished");
+        }
+
+        // the collector runs again; the checkpoint says how many of its uris to skip
+        JobCheckpoint checkpoint = isPartitioned() ? null : job.getCheckpoint();
+        job.withEndTime(null);
+        return run(job, jobManager, checkpoint);
+    }
+
+    // collectors that ignore forestIds would return every uri once per forest
+    private boolean isPartitioned() {
+        return partitionedCollector && flow.getCollector().isForestAware();
+    }
+
+    private JobTicket run(Job job, JobManager jobManager, JobCheckpoint checkpoint) {
+        String jobId = job.getJobId();
+        JobStatusWriter statusWriter = jobManager.newStatusWriter(job);
+
         Collector c = flow.getCollector();
         c.setHubConfig(hubConfig);
         c.setClient(sourceClient);
+        final boolean partitioned = isPartitioned();
 
-        AtomicLong successfulEvents = new AtomicLong(0);
-        AtomicLong failedEvents = new AtomicLong(0);
-        AtomicLong successfulBatches = new AtomicLong(0);
-        AtomicLong failedBatches = new AtomicLong(0);
+        BatchWatermark batchWatermark = new BatchWatermark(checkpoint);
+        JobCheckpoint start = batchWatermark.checkpoint();
+        JobProgress progress = new JobProgress(jobId, start, MAX_ERROR_MESSAGES,
+            flowItemCompleteListeners, flowItemFailureListeners, flowStatusListeners);
+        JobMetricsRecorder metrics = new JobMetricsRecorder(LATENCY_WINDOW);
 
         if (options == null) {
             options = new HashMap<>();
@@ -175,86 +266,115 @@ public class FlowRunnerImpl implements FlowRunner {
         options.put("flow", this.flow.getName());
         options.put("flowType", this.flow.getType().toString());
 
-        flowStatusListeners.forEach((FlowStatusListener listener) -> {
-            listener.onStatusChange(jobId, 0, "running collector");
-        });
+        progress.status(0, "running collector");
 
-        jobManager.saveJob(job.withStatus(JobStatus.RUNNING_COLLECTOR));
-        final DiskQueue<String> uris;
-        try {
-            uris = c.run(jobId, this.flow.getEntityName(), this.flow.getName(), threadCount, options);
+        DataMovementManager dataMovementManager = sourceClient.newDataMovementManager();
+        ForestConfiguration forestConfig = null;
+        if (hubConfig.getLoadBalancerHosts() != null && hubConfig.getLoadBalancerHosts().length > 0) {
+            forestConfig = new FilteredForestConfiguration(
+                dataMovementManager.readForestConfig()
+            ).withWhiteList(hubConfig.getLoadBalancerHosts());
         }
-        catch(Exception e) {
-            job.setCounts(0, 0, 0, 0)
-                .withStatus(JobStatus.FAILED)
-                .withEndTime(new Date());
-
-            StringWriter errors = new StringWriter();
-            e.printStackTrace(new PrintWriter(errors));
-            job.withJobOutput(errors.toString());
-            jobManager.saveJob(job);
-            return new JobTicketImpl(jobId, JobTicket.JobType.QUERY_BATCHER);
+        else if (partitioned) {
+            forestConfig = dataMovementManager.readForestConfig();
         }
 
-        flowStatusListeners.forEach((FlowStatusListener listener) -> {
-            listener.onStatusChange(jobId, 0, "starting harmonization");
-        });
-
-        Vector<String> errorMessages = new Vector<>();
+        job.withStatus(JobStatus.RUNNING_COLLECTOR);
+        statusWriter.update();
+        metrics.collectorStarted();
+        final Iterator<String> uris;
+        final UriStream uriStream;
+        final LongSupplier uriCount;
+        // the uris collected so far
+        final LongSupplier collectedCount;
+        if (streamingCollector || partitioned) {
+            if (partitioned) {
+                uriStream = c.stream(jobId, this.flow.getEntityName(), this.flow.getName(), threadCount, options, forestConfig.listForests());
+            }
+            else {
+                uriStream = c.stream(jobId, this.flow.getEntityName(), this.flow.getName(), threadCount, options);
+            }
+            uris = uriStream;
+            // the total is unknown until the collector is done
+            uriCount = () -> uriStream.isFinished() ? uriStream.getCount() : -1;
+            collectedCount = uriStream::getCount;
+        }
+        else {
+            final DiskQueue<String> uriQueue;
+            try {
+                uriQueue = c.run(jobId, this.flow.getEntityName(), this.flow.getName(), threadCount, options);
+            }
+            catch(Exception e) {
+                StringWriter errors = new StringWriter();
+                e.printStackTrace(new PrintWriter(errors));
+                progress.awaitListeners();
+                return failJob(job, statusWriter, errors.toString());
+            }
+            metrics.collectorFinished();
+            uriStream = null;
+            uris = uriQueue.iterator();
+            long uriQueueSize = uriQueue.size();
+            uriCount = () -> uriQueueSize;
+            collectedCount = uriCount;
+        }
 
-        DataMovementManager dataMovementManager = sourceClient.newDataMovementManager();
+        if (start.getUriOffset() > 0) {
+            // skip what the checkpointed run already processed, as long as the collector returned the same uris
+            long skipped = 0;
+            String lastSkipped = null;
+            while (skipped < start.getUriOffset() && uris.hasNext()) {
+                lastSkipped = uris.next();
+                skipped++;
+            }
+            if (skipped < start.getUriOffset() || !start.getLastUri().equals(lastSkipped)) {
+                progress.awaitListeners();
+                return failJob(job, statusWriter, "Cannot resume job " + jobId +
+                    ": the collector did not return the same uris as before the checkpoint. Run the flow again instead.");
+            }
+        }
+        final boolean checkpointing = checkpointInterval > 0 && !partitioned;
+        AtomicLong nextCheckpoint = new AtomicLong(System.currentTimeMillis() + checkpointInterval);
 
-        double batchCount = Math.ceil((double)uris.size() / (double)batchSize);
+        progress.status(0, "starting harmonization");
 
         HashMap<String, JobTicket> ticketWrapper = new HashMap<>();
 
-        QueryBatcher tempQueryBatcher = dataMovementManager.newQueryBatcher(uris.iterator())
-            .withBatchSize(batchSize)
-            .withThreadCount(threadCount)
+        final String serializedOptions;
+        try {
+            serializedOptions = objectMapper.writeValueAsString(options);
+        }
+        catch(JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+        // one flow resource per host the QueryBatcher sends batches to
+        Map<DatabaseClient, FlowResource> flowResources = new ConcurrentHashMap<>();
+
+        // in adaptive mode the QueryBatcher hands out the largest batches, which are split into flow calls
+        final AdaptiveBatching adaptive = adaptiveBatching ?
+            new AdaptiveBatching(batchSize, threadCount, batchSize * ADAPTIVE_MAX_FACTOR, threadCount * ADAPTIVE_MAX_FACTOR) : null;
+        final int dispatchBatchSize = adaptiveBatching ? batchSize * ADAPTIVE_MAX_FACTOR : batchSize;
+        final int dispatchThreadCount = adaptiveBatching ? threadCount * ADAPTIVE_MAX_FACTOR : threadCount;
+
+        QueryBatcher tempQueryBatcher = dataMovementManager.newQueryBatcher(uris)
+            .withBatchSize(dispatchBatchSize)
+            .withThreadCount(dispatchThreadCount)
             .withJobId(jobId)
             .onUrisReady((QueryBatch batch) -> {
                 try {
-                    FlowResource flowRunner = new FlowResource(batch.getClient(), destinationDatabase, flow);
-                    RunFlowResponse response = flowRunner.run(jobId, batch.getItems(), options);
-                    failedEvents.addAndGet(response.errorCount);
-                    successfulEvents.addAndGet(response.totalCount - response.errorCount);
-                    if (response.errors != null) {
-                        if (errorMessages.size() < MAX_ERROR_MESSAGES) {
-                            errorMessages.addAll(response.errors.stream().map(jsonNode -> jsonToString(jsonNode)).collect(Collectors.toList()));
-                        }
-                    }
-
-                    if (response.errorCount < response.totalCount) {
-                        successfulBatches.addAndGet(1);
-                    }
-                    else {
-                        failedBatches.addAndGet(1);
-                    }
-
-                    int percentComplete = (int) (((double)successfulBatches.get() / batchCount) * 100.0);
-
-                    if (percentComplete != previousPercentComplete && (percentComplete % 5 == 0)) {
-                        previousPercentComplete = percentComplete;
-                        flowStatusListeners.forEach((FlowStatusListener listener) -> {
-                            listener.onStatusChange(jobId, percentComplete, "");
-                        });
-                    }
-
-                    if (flowItemCompleteListeners.size() > 0) {
-                        response.completedItems.forEach((String item) -> {
-                            flowItemCompleteListeners.forEach((FlowItemCompleteListener listener) -> {
-                                listener.processCompletion(jobId, item);
-                            });
-                        });
-                    }
-
-                    if (flowItemFailureListeners.size() > 0) {
-                        response.failedItems.forEach((String item) -> {
-                            flowItemFailureListeners.forEach((FlowItemFailureListener listener) -> {
-                                listener.processFailure(jobId, item);
-                            });
-                        });
+                    FlowResource flowRunner = flowResources.computeIfAbsent(batch.getClient(),
+                        client -> new FlowResource(client, destinationDatabase, flow, serializedOptions, batchedWrites));
+                    long batchStart = System.nanoTime();
+                    RunFlowResponse response = adaptive != null ?
+                        runAdaptive(flowRunner, adaptive, jobId, batch.getItems()) :
+                        flowRunner.run(jobId, batch.getItems());
+                    metrics.batchFinished(batch.getClient().getHost(), batch.getItems().length, System.nanoTime() - batchStart);
+                    metrics.pluginTimings(response.timings);
+                    if (uriStream != null && uriStream.isFinished()) {
+                        metrics.collectorFinished();
                     }
+                    batchWatermark.finished(batch.getJobBatchNumber(), batch.getItems(), response.errorCount);
+                    progress.batchFinished(response, FlowRunnerImpl::jsonToString);
+                    progress.reportProgress(uriCount.getAsLong(), dispatchBatchSize);
 
                     if (stopOnFailure && response.errorCount > 0) {
                         JobTicket jobTicket = ticketWrapper.get("jobTicket");
@@ -265,53 +385,81 @@ public class FlowRunnerImpl implements FlowRunner {
 
                 }
                 catch(Exception e) {
-                    if (errorMessages.size() < MAX_ERROR_MESSAGES) {
-                        errorMessages.add(e.toString());
+                    // these uris were not processed, so a resumed job must not skip them
+                    batchWatermark.abandoned(batch.getJobBatchNumber());
+                    progress.error(e.toString());
+                }
+
+                long now = System.currentTimeMillis();
+                long due = nextCheckpoint.get();
+                if (checkpointing && now >= due && nextCheckpoint.compareAndSet(due, now + checkpointInterval)) {
+                    try {
+                        synchronized (job) {
+                            job.setCounts(progress.getSuccessfulEvents(), progress.getFailedEvents(),
+                                progress.getSuccessfulBatches(), progress.getFailedBatches())
+                                .withCheckpoint(batchWatermark.checkpoint());
+                        }
+                        statusWriter.update();
+                    }
+                    catch(Exception e) {
+                        progress.error("Failed to save checkpoint: " + e.toString());
                     }
                 }
             })
             .onQueryFailure((QueryBatchException failure) -> {
-                failedBatches.addAndGet(1);
-                failedEvents.addAndGet(batchSize);
+                progress.batchFailed(dispatchBatchSize);
             });
 
 
-        if (hubConfig.getLoadBalancerHosts() != null && hubConfig.getLoadBalancerHosts().length > 0){
-            tempQueryBatcher = tempQueryBatcher.withForestConfig(
-                new FilteredForestConfiguration(
-                    dataMovementManager.readForestConfig()
-                ).withWhiteList(hubConfig.getLoadBalancerHosts())
-            );
+        if (forestConfig != null) {
+            tempQueryBatcher = tempQueryBatcher.withForestConfig(forestConfig);
         }
         QueryBatcher queryBatcher = tempQueryBatcher;
 
 
+        metrics.batchesStarted();
         JobTicket jobTicket = dataMovementManager.startJob(queryBatcher);
         ticketWrapper.put("jobTicket", jobTicket);
-        jobManager.saveJob(job.withStatus(JobStatus.RUNNING_HARMONIZE));
+        synchronized (job) {
+            job.withStatus(JobStatus.RUNNING_HARMONIZE);
+        }
+        statusWriter.update();
+        if (progressInterval > 0) {
+            statusWriter.snapshotEvery(progressInterval, () -> job
+                .setCounts(progress.getSuccessfulEvents(), progress.getFailedEvents(),
+                    progress.getSuccessfulBatches(), progress.getFailedBatches())
+                .withMetrics(metrics.snapshot(collectedCount.getAsLong() - progress.getSuccessfulEvents() - progress.getFailedEvents())));
+        }
 
         runningThread = new Thread(() -> {
             queryBatcher.awaitCompletion();
 
-            flowStatusListeners.forEach((FlowStatusListener listener) -> {
-                listener.onStatusChange(jobId, 100, "");
-            });
+            progress.status(100, "");
+            progress.awaitListeners();
 
             flowFinishedListeners.forEach((FlowFinishedListener::onFlowFinished));
 
             dataMovementManager.stopJob(queryBatcher);
 
+            long successfulEvents = progress.getSuccessfulEvents();
+            long failedEvents = progress.getFailedEvents();
             JobStatus status;
-            if (failedEvents.get() > 0 && stopOnFailure) {
+            if (uriStream != null && uriStream.getError() != null) {
+                status = JobStatus.FAILED;
+                StringWriter errors = new StringWriter();
+                uriStream.getError().printStackTrace(new PrintWriter(errors));
+                progress.error(errors.toString());
+            }
+            else if (failedEvents > 0 && stopOnFailure) {
                 status = JobStatus.STOP_ON_ERROR;
             }
-            else if (failedEvents.get() + successfulEvents.get() != uris.size()) {
+            else if (failedEvents + successfulEvents != uriCount.getAsLong()) {
                 status = JobStatus.CANCELED;
             }
-            else if (failedEvents.get() > 0 && successfulEvents.get() > 0) {
+            else if (failedEvents > 0 && successfulEvents > 0) {
                 status = JobStatus.FINISHED_WITH_ERRORS;
             }
-            else if (failedEvents.get() == 0 && successfulEvents.get() > 0) {
+            else if (failedEvents == 0 && successfulEvents > 0) {
                 status = JobStatus.FINISHED;
             }
             else {
@@ -319,51 +467,125 @@ public class FlowRunnerImpl implements FlowRunner {
             }
 
             // store the thing in MarkLogic
-            job.setCounts(successfulEvents.get(), failedEvents.get(), successfulBatches.get(), failedBatches.get())
-                .withStatus(status)
-                .withEndTime(new Date());
-
-            if (errorMessages.size() > 0) {
-                job.withJobOutput(errorMessages);
+            synchronized (job) {
+                metrics.collectorFinished();
+                job.setCounts(successfulEvents, failedEvents, progress.getSuccessfulBatches(), progress.getFailedBatches())
+                    .withMetrics(metrics.snapshot(collectedCount.getAsLong() - successfulEvents - failedEvents))
+                    .withStatus(status)
+                    .withEndTime(new Date());
+
+                if (checkpointing) {
+                    job.withCheckpoint(batchWatermark.checkpoint());
+                }
+                List<String> errorMessages = progress.getErrorMessages();
+                if (errorMessages.size() > 0) {
+                    job.withJobOutput(errorMessages);
+                }
             }
-            jobManager.saveJob(job);
+            statusWriter.close();
         });
         runningThread.start();
 
         return jobTicket;
     }
 
-    private String jsonToString(JsonNode node) {
+    /**
+     * Runs the batch through the flow in pieces of the current adaptive batch size.
+     */
+    private RunFlowResponse runAdaptive(FlowResource flowRunner, AdaptiveBatching adaptive, String jobId, String[] items) throws InterruptedException {
+        RunFlowResponse response = new RunFlowResponse();
+        response.completedItems = new ArrayList<>();
+        response.failedItems = new ArrayList<>();
+        response.errors = new ArrayList<>();
+        response.timings = new HashMap<>();
+
+        int offset = 0;
+        while (offset < items.length) {
+            String[] piece = Arrays.copyOfRange(items, offset, Math.min(items.length, offset + adaptive.getBatchSize()));
+            offset += piece.length;
+
+            adaptive.acquire();
+            long start = System.nanoTime();
+            RunFlowResponse pieceResponse;
+            try {
+                pieceResponse = flowRunner.run(jobId, piece);
+            }
+            catch(RuntimeException e) {
+                adaptive.release(piece.length, piece.length, System.nanoTime() - start, true);
+                throw e;
+            }
+            adaptive.release(piece.length, pieceResponse.errorCount, System.nanoTime() - start, false);
+
+            response.totalCount += pieceResponse.totalCount;
+            response.errorCount += pieceResponse.errorCount;
+            if (pieceResponse.completedItems != null) {
+                response.completedItems.addAll(pieceResponse.completedItems);
+            }
+            if (pieceResponse.failedItems != null) {
+                response.failedItems.addAll(pieceResponse.failedItems);
+            }
+            if (pieceResponse.errors != null) {
+                response.errors.addAll(pieceResponse.errors);
+            }
+            if (pieceResponse.timings != null) {
+                pieceResponse.timings.forEach((label, millis) -> response.timings.merge(label, millis, Double::sum));
+            }
+        }
+        return response;
+    }
+
+    private JobTicket failJob(Job job, JobStatusWriter statusWriter, String output) {
+        synchronized (job) {
+            job.setCounts(0, 0, 0, 0)
+                .withStatus(JobStatus.FAILED)
+                .withEndTime(new Date())
+                .withJobOutput(output);
+        }
+        statusWriter.close();
+        return new JobTicketImpl(job.getJobId(), JobTicket.JobType.QUERY_BATCHER);
+    }
+
+    private static String jsonToString(JsonNode node) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
             return objectMapper.writeValueAsString(node);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
 
-    class FlowResource extends ResourceManager {
+    /**
+     * Calls the flow service for one host. It is created once per job and
+     * host and shared by all batch threads.
+     */
+    static class FlowResource extends ResourceManager {
 
         static final public String NAME = "flow";
 
         private DatabaseClient srcClient;
         private String targetDatabase;
         private Flow flow;
-
-        public FlowResource(DatabaseClient srcClient, String targetDatabase, Flow flow) {
+        private String options;
+        private boolean batchWrites;
+
+        /**
+         * @param options - the flow options, already serialized to json
+         * @param batchWrites - true to commit the writes of each call in one transaction
+         */
+        public FlowResource(DatabaseClient srcClient, String targetDatabase, Flow flow, String options, boolean batchWrites) {
             super();
             this.flow = flow;
             this.srcClient = srcClient;
             this.targetDatabase = targetDatabase;
+            this.options = options;
+            this.batchWrites = batchWrites;
             this.srcClient.init(NAME, this);
         }
 
         public RunFlowResponse run(String jobId, String[] items) {
-            return run(jobId, items, null);
-        }
-
-        public RunFlowResponse run(String jobId, String[] items, Map<String, Object> options) {
             RunFlowResponse resp;
+            Gauge inFlight = HubMetrics.gauge(HubMetrics.FLOW_BATCHES_IN_FLIGHT);
+            inFlight.increment();
+            long start = System.nanoTime();
             try {
                 RequestParameters params = new RequestParameters();
                 params.add("entity-name", flow.getEntityName());
@@ -372,8 +594,10 @@ public class FlowRunnerImpl implements FlowRunner {
                 params.put("identifiers", items);
                 params.put("target-database", targetDatabase);
                 if (options != null) {
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    params.put("options", objectMapper.writeValueAsString(options));
+                    params.put("options", options);
+                }
+                if (batchWrites) {
+                    params.put("batch-writes", "true");
                 }
                 ResourceServices.ServiceResultIterator resultItr = this.getServices().post(params, new StringHandle("{}").withFormat(Format.JSON));
                 if (resultItr == null || ! resultItr.hasNext()) {
@@ -382,15 +606,20 @@ public class FlowRunnerImpl implements FlowRunner {
                 else {
                     ResourceServices.ServiceResult res = resultItr.next();
                     StringHandle handle = new StringHandle();
-                    ObjectMapper objectMapper = new ObjectMapper();
                     resp = objectMapper.readValue(res.getContent(handle).get(), RunFlowResponse.class);
                 }
-
+                HubMetrics.counter(HubMetrics.FLOW_DOCUMENTS).increment(resp.totalCount);
+                HubMetrics.counter(HubMetrics.FLOW_ERRORS).increment(resp.errorCount);
             }
             catch(Exception e) {
+                HubMetrics.counter(HubMetrics.FLOW_BATCH_FAILURES).increment();
                 e.printStackTrace();
                 throw new RuntimeException(e);
             }
+            finally {
+                HubMetrics.timer(HubMetrics.FLOW_BATCHES).recordSince(start);
+                inFlight.decrement();
+            }
             return resp;
         }
     }
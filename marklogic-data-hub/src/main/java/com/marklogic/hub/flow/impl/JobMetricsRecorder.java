@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.flow.impl;
+
+import com.marklogic.hub.job.JobMetrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures the throughput of a running harmonize job for its
+ * {@link JobMetrics}, updated by all batch threads without locking.
+ *
+ * Only the latencies of the most recent batches are kept, in a ring, and
+ * the percentiles are worked out from them when a snapshot is taken.
+ */
+class JobMetricsRecorder {
+
+    private final LongSupplier clock;
+
+    private volatile Long collectorStart;
+    private volatile Long collectorEnd;
+    private volatile Long batchesStart;
+
+    private final LongAdder documents = new LongAdder();
+    private final AtomicLongArray latencies;
+    private final AtomicLong latencyCount = new AtomicLong();
+    private final Map<String, HostCounts> hosts = new ConcurrentHashMap<>();
+    private final Map<String, DoubleAdder> pluginTimings = new ConcurrentHashMap<>();
+
+    private static class HostCounts {
+        final LongAdder batches = new LongAdder();
+        final LongAdder documents = new LongAdder();
+        final LongAdder latency = new LongAdder();
+    }
+
+    JobMetricsRecorder(int latencyWindow) {
+        this(latencyWindow, System::nanoTime);
+    }
+
+    JobMetricsRecorder(int latencyWindow, LongSupplier clock) {
+        this.latencies = new AtomicLongArray(latencyWindow);
+        this.clock = clock;
+    }
+
+    void collectorStarted() {
+        collectorStart = clock.getAsLong();
+    }
+
+    /**
+     * Marks the end of the collector. Only the first call counts, so a
+     * streaming collector can be marked by whichever thread sees it finish.
+     */
+    void collectorFinished() {
+        if (collectorEnd == null) {
+            collectorEnd = clock.getAsLong();
+        }
+    }
+
+    boolean isCollectorFinished() {
+        return collectorEnd != null;
+    }
+
+    void batchesStarted() {
+        batchesStart = clock.getAsLong();
+    }
+
+    /**
+     * Records a batch that was sent to the flow, whether its items succeeded or not.
+     *
+     * @param host - the host the batch was sent to
+     * @param items - the number of uris in the batch
+     * @param latency - how long the batch took, in nanoseconds
+     */
+    void batchFinished(String host, int items, long latency) {
+        documents.add(items);
+        long index = latencyCount.getAndIncrement();
+        latencies.set((int) (index % latencies.length()), latency);
+
+        HostCounts counts = hosts.computeIfAbsent(host, h -> new HostCounts());
+        counts.batches.increment();
+        counts.documents.add(items);
+        counts.latency.add(latency);
+    }
+
+    /**
+     * Adds the server time of a batch to the time spent in each kind of plugin.
+     *
+     * @param timings - milliseconds by plugin label, or null if the server did not send them
+     */
+    void pluginTimings(Map<String, Double> timings) {
+        if (timings != null) {
+            timings.forEach((label, millis) -> {
+                if (millis != null) {
+                    pluginTimings.computeIfAbsent(label, l -> new DoubleAdder()).add(millis);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param queued - the number of collected uris that have not been sent to the flow yet
+     * @return the metrics so far
+     */
+    JobMetrics snapshot(long queued) {
+        long now = clock.getAsLong();
+
+        double seconds = batchesStart != null ? (double) (now - batchesStart) / TimeUnit.SECONDS.toNanos(1) : 0;
+        double docsPerSecond = seconds > 0 ? documents.sum() / seconds : 0;
+
+        int size = (int) Math.min(latencyCount.get(), latencies.length());
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+
+        long collectorDuration = collectorStart == null ? 0 : (collectorEnd != null ? collectorEnd : now) - collectorStart;
+
+        Map<String, JobMetrics.HostMetrics> hostMetrics = new TreeMap<>();
+        hosts.forEach((host, counts) -> {
+            long batches = counts.batches.sum();
+            hostMetrics.put(host, new JobMetrics.HostMetrics(batches, counts.documents.sum(),
+                batches > 0 ? toMillis(counts.latency.sum() / batches) : 0));
+        });
+
+        Map<String, Long> timings = new TreeMap<>();
+        pluginTimings.forEach((label, millis) -> timings.put(label, Math.round(millis.sum())));
+
+        return new JobMetrics(Math.round(docsPerSecond * 100) / 100.0,
+            toMillis(percentile(sorted, 50)), toMillis(percentile(sorted, 95)), toMillis(percentile(sorted, 99)),
+            toMillis(collectorDuration), Math.max(0, queued), hostMetrics, timings);
+    }
+
+    /**
+     * @return the nearest-rank percentile of sorted values, or 0 if there are none
+     */
+    static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.flow.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.hub.flow.FlowItemCompleteListener;
+import com.marklogic.hub.flow.FlowItemFailureListener;
+import com.marklogic.hub.flow.FlowStatusListener;
+import com.marklogic.hub.flow.RunFlowResponse;
+import com.marklogic.hub.job.JobCheckpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Counts and error messages of a running harmonize job, updated by all
+ * batch threads without locking.
+ *
+ * Only the most recent error messages are kept. Listeners are called on a
+ * single thread of their own, one task per batch, in the order the events
+ * happened, so a slow listener never holds up a batch thread.
+ */
+class JobProgress {
+
+    private final String jobId;
+    private final List<FlowItemCompleteListener> itemCompleteListeners;
+    private final List<FlowItemFailureListener> itemFailureListeners;
+    private final List<FlowStatusListener> statusListeners;
+    private final ExecutorService listenerExecutor;
+
+    private final LongAdder successfulEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder successfulBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    private final AtomicReferenceArray<String> errorMessages;
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicInteger percentComplete = new AtomicInteger();
+
+    JobProgress(String jobId, JobCheckpoint start, int maxErrorMessages,
+                List<FlowItemCompleteListener> itemCompleteListeners,
+                List<FlowItemFailureListener> itemFailureListeners,
+                List<FlowStatusListener> statusListeners) {
+        this.jobId = jobId;
+        this.itemCompleteListeners = itemCompleteListeners;
+        this.itemFailureListeners = itemFailureListeners;
+        this.statusListeners = statusListeners;
+        this.errorMessages = new AtomicReferenceArray<>(maxErrorMessages);
+        this.listenerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flow-listeners-" + jobId);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (start != null) {
+            successfulEvents.add(start.getSuccessfulEvents());
+            failedEvents.add(start.getFailedEvents());
+            successfulBatches.add(start.getSuccessfulBatches());
+            failedBatches.add(start.getFailedBatches());
+        }
+    }
+
+    /**
+     * Counts a batch that ran through the flow and passes its items to the listeners.
+     *
+     * @param response - the response of the flow
+     * @param errorFormatter - turns the errors of the response into messages
+     */
+    void batchFinished(RunFlowResponse response, Function<JsonNode, String> errorFormatter) {
+        successfulEvents.add(response.totalCount - response.errorCount);
+        failedEvents.add(response.errorCount);
+        if (response.errorCount < response.totalCount) {
+            successfulBatches.increment();
+        }
+        else {
+            failedBatches.increment();
+        }
+
+        if (response.errors != null) {
+            // older messages would only be overwritten
+            int size = response.errors.size();
+            for (int i = Math.max(0, size - errorMessages.length()); i < size; i++) {
+                error(errorFormatter.apply(response.errors.get(i)));
+            }
+        }
+
+        boolean notifyComplete = !itemCompleteListeners.isEmpty() && response.completedItems != null && !response.completedItems.isEmpty();
+        boolean notifyFailure = !itemFailureListeners.isEmpty() && response.failedItems != null && !response.failedItems.isEmpty();
+        if (notifyComplete || notifyFailure) {
+            listenerExecutor.execute(() -> {
+                if (notifyComplete) {
+                    for (String item : response.completedItems) {
+                        for (FlowItemCompleteListener listener : itemCompleteListeners) {
+                            listener.processCompletion(jobId, item);
+                        }
+                    }
+                }
+                if (notifyFailure) {
+                    for (String item : response.failedItems) {
+                        for (FlowItemFailureListener listener : itemFailureListeners) {
+                            listener.processFailure(jobId, item);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Counts a batch whose uris could not be read.
+     *
+     * @param items - the number of uris in the batch
+     */
+    void batchFailed(long items) {
+        failedBatches.increment();
+        failedEvents.add(items);
+    }
+
+    /**
+     * Records an error message, replacing the oldest once the ring is full.
+     *
+     * @param message - the message
+     */
+    void error(String message) {
+        long index = errorCount.getAndIncrement();
+        errorMessages.set((int) (index % errorMessages.length()), message);
+    }
+
+    /**
+     * Tells the status listeners how far along the job is, every 5 percent.
+     *
+     * @param totalUris - the number of uris in the job, or less than 1 if not known yet
+     * @param batchSize - the number of uris per batch
+     */
+    void reportProgress(long totalUris, int batchSize) {
+        if (totalUris <= 0) {
+            return;
+        }
+        double batchCount = Math.ceil((double) totalUris / (double) batchSize);
+        int percent = (int) (((double) successfulBatches.sum() / batchCount) * 100.0);
+        percent -= percent % 5;
+
+        // only the thread that moves the percentage forward reports it
+        int previous = percentComplete.get();
+        if (percent > previous && percentComplete.compareAndSet(previous, percent)) {
+            status(percent, "");
+        }
+    }
+
+    /**
+     * Passes a status change to the status listeners.
+     *
+     * @param percentComplete - how far along the job is
+     * @param message - the status
+     */
+    void status(int percentComplete, String message) {
+        if (!statusListeners.isEmpty()) {
+            listenerExecutor.execute(() -> {
+                for (FlowStatusListener listener : statusListeners) {
+                    listener.onStatusChange(jobId, percentComplete, message);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits for the listeners to receive every event so far, and stops the listener thread.
+     */
+    void awaitListeners() {
+        listenerExecutor.shutdown();
+        try {
+            listenerExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getSuccessfulEvents() {
+        return successfulEvents.sum();
+    }
+
+    long getFailedEvents() {
+        return failedEvents.sum();
+    }
+
+    long getSuccessfulBatches() {
+        return successfulBatches.sum();
+    }
+
+    long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * @return the most recent error messages, oldest first
+     */
+    List<String> getErrorMessages() {
+        long count = errorCount.get();
+        int size = (int) Math.min(count, errorMessages.length());
+        List<String> messages = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            String message = errorMessages.get((int) (i % errorMessages.length()));
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+}
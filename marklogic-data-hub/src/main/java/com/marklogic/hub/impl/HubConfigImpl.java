@@ -113,6 +113,10 @@ public class HubConfigImpl implements HubConfig {
 
     private String[] loadBalancerHosts;
 
+    private Integer collectorPoolSize = DEFAULT_COLLECTOR_POOL_SIZE;
+    private Integer collectorKeepAlive = DEFAULT_COLLECTOR_KEEP_ALIVE;
+    private boolean collectorCompression = false;
+
     private String customForestPath = DEFAULT_CUSTOM_FOREST_PATH;
 
     private String modulePermissions = "rest-reader,read,rest-writer,insert,rest-writer,update,rest-extension-user,execute";
@@ -548,6 +552,30 @@ public class HubConfigImpl implements HubConfig {
         this.loadBalancerHosts = loadBalancerHosts;
     }
 
+    @JsonIgnore
+    public Integer getCollectorPoolSize() {
+        return collectorPoolSize;
+    }
+    public void setCollectorPoolSize(Integer collectorPoolSize) {
+        this.collectorPoolSize = collectorPoolSize;
+    }
+
+    @JsonIgnore
+    public Integer getCollectorKeepAlive() {
+        return collectorKeepAlive;
+    }
+    public void setCollectorKeepAlive(Integer collectorKeepAlive) {
+        this.collectorKeepAlive = collectorKeepAlive;
+    }
+
+    @JsonIgnore
+    public boolean getCollectorCompression() {
+        return collectorCompression;
+    }
+    public void setCollectorCompression(boolean collectorCompression) {
+        this.collectorCompression = collectorCompression;
+    }
+
     @JsonIgnore
     public String getCustomForestPath() {
         return customForestPath;
@@ -683,6 +711,10 @@ public class HubConfigImpl implements HubConfig {
                 loadBalancerHosts = lbh.split(",");
             }
 
+            collectorPoolSize = getEnvPropInteger(environmentProperties, "mlCollectorPoolSize", collectorPoolSize);
+            collectorKeepAlive = getEnvPropInteger(environmentProperties, "mlCollectorKeepAlive", collectorKeepAlive);
+            collectorCompression = getEnvPropBoolean(environmentProperties, "mlCollectorCompression", collectorCompression);
+
             projectDir = getEnvPropString(environmentProperties, "hubProjectDir", projectDir);
 
             logger.info("Hub Project Dir: " + projectDir);
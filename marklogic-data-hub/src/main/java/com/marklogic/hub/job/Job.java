@@ -23,6 +23,9 @@ public class Job {
     private long successfulBatches = 0;
     private long failedBatches = 0;
 
+    private JobCheckpoint checkpoint;
+    private JobMetrics metrics;
+
     private Job() {
         this.startTime = new Date();
     }
@@ -81,6 +84,16 @@ public class Job {
         return this;
     }
 
+    public Job withCheckpoint(JobCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    public Job withMetrics(JobMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     @Id
     public String getJobId() {
         return jobId;
@@ -133,4 +146,12 @@ public class Job {
     public long getFailedBatches() {
         return failedBatches;
     }
+
+    public JobCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
 }
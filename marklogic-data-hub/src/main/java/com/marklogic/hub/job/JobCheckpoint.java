@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.job;
+
+import java.util.Date;
+
+/**
+ * The point up to which a harmonize job is known to be done.
+ *
+ * Batches finish out of order, so the checkpoint only covers the
+ * unbroken run of finished batches from the start of the collector
+ * results: every uri before <code>uriOffset</code> has been processed.
+ * The counts are the counts of those batches only, so a resumed job
+ * can carry on from them without counting anything twice.
+ */
+public class JobCheckpoint {
+    private long batchWatermark = 0;
+    private long uriOffset = 0;
+    private String lastUri;
+
+    private long successfulEvents = 0;
+    private long failedEvents = 0;
+    private long successfulBatches = 0;
+    private long failedBatches = 0;
+
+    private Date timestamp;
+
+    private JobCheckpoint() {}
+
+    /**
+     * @param batchWatermark - the number of batches, from the first, that have all finished
+     * @param uriOffset - the number of collector uris those batches cover
+     * @param lastUri - the last uri covered, used to check that the collector returns the same uris on resume
+     */
+    public JobCheckpoint(long batchWatermark, long uriOffset, String lastUri) {
+        this.batchWatermark = batchWatermark;
+        this.uriOffset = uriOffset;
+        this.lastUri = lastUri;
+        this.timestamp = new Date();
+    }
+
+    public JobCheckpoint setCounts(long successfulEvents, long failedEvents, long successfulBatches, long failedBatches) {
+        this.successfulEvents = successfulEvents;
+        this.failedEvents = failedEvents;
+        this.successfulBatches = successfulBatches;
+        this.failedBatches = failedBatches;
+        return this;
+    }
+
+    public long getBatchWatermark() {
+        return batchWatermark;
+    }
+
+    public long getUriOffset() {
+        return uriOffset;
+    }
+
+    public String getLastUri() {
+        return lastUri;
+    }
+
+    public long getSuccessfulEvents() {
+        return successfulEvents;
+    }
+
+    public long getFailedEvents() {
+        return failedEvents;
+    }
+
+    public long getSuccessfulBatches() {
+        return successfulBatches;
+    }
+
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.query.StructuredQueryBuilder;
+import com.marklogic.client.query.StructuredQueryDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Deletes jobs and their traces with Data Movement jobs, so that the work is
+ * spread over batches and forests instead of running in one request.
+ *
+ * The job documents are found first. Their traces are deleted next, and the
+ * job documents last, so a job whose traces could not all be deleted can
+ * still be found and deleted again.
+ */
+class JobDeleteBatcher {
+
+    private static final String CODEPOINT = "http://marklogic.com/collation/codepoint";
+    private static final String JOB_URI_PREFIX = "/jobs/";
+    private static final String JOB_URI_SUFFIX = ".json";
+
+    private final DatabaseClient jobClient;
+    private final DatabaseClient traceClient;
+    private final int batchSize;
+    private final int threadCount;
+    private final JobDeleteListener listener;
+
+    private final LongAdder deletedTraces = new LongAdder();
+    private final LongAdder deletedJobs = new LongAdder();
+    private final Queue<String> deletedJobIds = new ConcurrentLinkedQueue<>();
+    private final Queue<String> failedTraces = new ConcurrentLinkedQueue<>();
+    private final Queue<String> failedJobUris = new ConcurrentLinkedQueue<>();
+    private final Queue<JsonNode> errors = new ConcurrentLinkedQueue<>();
+
+    JobDeleteBatcher(DatabaseClient jobClient, DatabaseClient traceClient, int batchSize, int threadCount,
+                     JobDeleteListener listener) {
+        this.jobClient = jobClient;
+        this.traceClient = traceClient;
+        this.batchSize = batchSize;
+        this.threadCount = threadCount;
+        this.listener = listener;
+    }
+
+    /**
+     * Deletes the given jobs and every trace of them.
+     *
+     * @param jobIds - the ids of the jobs
+     * @return what was deleted. Ids without a job document are failed jobs.
+     */
+    JobDeleteResponse deleteJobs(Collection<String> jobIds) {
+        Set<String> ids = new LinkedHashSet<>(jobIds);
+        ids.remove("");
+        if (ids.isEmpty()) {
+            return response(Collections.emptyList());
+        }
+        StructuredQueryBuilder sqb = jobClient.newQueryManager().newStructuredQueryBuilder();
+        List<String> jobUris = findJobs(sqb.and(
+            sqb.collection("job"),
+            sqb.range(sqb.jsonProperty("jobId"), "xs:string", CODEPOINT, StructuredQueryBuilder.Operator.EQ, ids.toArray())
+        ));
+        deleteJobUris(jobUris, deleteTraces(ids));
+
+        List<String> failedJobs = new ArrayList<>(ids);
+        failedJobs.removeAll(deletedJobIds);
+        return response(failedJobs);
+    }
+
+    /**
+     * Deletes the jobs that ended before the given time, and every trace of them.
+     * Jobs that are still running are kept.
+     *
+     * @param endedBefore - the time, in xs:dateTime format
+     * @return what was deleted
+     */
+    JobDeleteResponse deleteJobsEndedBefore(String endedBefore) {
+        StructuredQueryBuilder sqb = jobClient.newQueryManager().newStructuredQueryBuilder();
+        List<String> jobUris = findJobs(sqb.and(
+            sqb.collection("job"),
+            sqb.range(sqb.jsonProperty("endTime"), "xs:dateTime", StructuredQueryBuilder.Operator.LT, endedBefore)
+        ));
+        if (!jobUris.isEmpty()) {
+            List<String> ids = new ArrayList<>(jobUris.size());
+            for (String uri : jobUris) {
+                ids.add(toJobId(uri));
+            }
+            deleteJobUris(jobUris, deleteTraces(ids));
+        }
+        return response(Collections.emptyList());
+    }
+
+    private List<String> findJobs(StructuredQueryDefinition query) {
+        Queue<String> uris = new ConcurrentLinkedQueue<>();
+        DataMovementManager dataMovementManager = jobClient.newDataMovementManager();
+        QueryBatcher queryBatcher = dataMovementManager.newQueryBatcher(query)
+            .withBatchSize(batchSize)
+            .withThreadCount(threadCount)
+            .onUrisReady(batch -> Collections.addAll(uris, batch.getItems()))
+            .onQueryFailure(failure -> errors.add(new TextNode(failure.toString())));
+        run(dataMovementManager, queryBatcher);
+        return new ArrayList<>(uris);
+    }
+
+    /**
+     * @return true if every trace of the jobs was deleted
+     */
+    private boolean deleteTraces(Collection<String> jobIds) {
+        int errorsBefore = errors.size();
+        StructuredQueryBuilder sqb = traceClient.newQueryManager().newStructuredQueryBuilder();
+        StructuredQueryDefinition query = sqb.range(sqb.pathIndex("/trace/jobId"), "xs:string", CODEPOINT,
+            StructuredQueryBuilder.Operator.EQ, jobIds.toArray());
+        DataMovementManager dataMovementManager = traceClient.newDataMovementManager();
+        // the deletes must not move the pages of uris still to be read
+        QueryBatcher queryBatcher = dataMovementManager.newQueryBatcher(query)
+            .withBatchSize(batchSize)
+            .withThreadCount(threadCount)
+            .withConsistentSnapshot()
+            .onUrisReady(batch -> delete(batch, failedTraces, uri -> deletedTraces.increment()))
+            .onQueryFailure(failure -> errors.add(new TextNode(failure.toString())));
+        run(dataMovementManager, queryBatcher);
+        return errors.size() == errorsBefore;
+    }
+
+    private void deleteJobUris(List<String> jobUris, boolean tracesDeleted) {
+        if (!tracesDeleted) {
+            // keep the jobs so they can be deleted again
+            failedJobUris.addAll(jobUris);
+            return;
+        }
+        if (jobUris.isEmpty()) {
+            return;
+        }
+        DataMovementManager dataMovementManager = jobClient.newDataMovementManager();
+        QueryBatcher queryBatcher = dataMovementManager.newQueryBatcher(jobUris.iterator())
+            .withBatchSize(batchSize)
+            .withThreadCount(threadCount)
+            .onUrisReady(batch -> delete(batch, failedJobUris, uri -> {
+                deletedJobs.increment();
+                deletedJobIds.add(toJobId(uri));
+            }))
+            .onQueryFailure(failure -> errors.add(new TextNode(failure.toString())));
+        run(dataMovementManager, queryBatcher);
+    }
+
+    private void delete(QueryBatch batch, Queue<String> failed, Consumer<String> deleted) {
+        try {
+            batch.getClient().newDocumentManager().delete(batch.getItems());
+            for (String uri : batch.getItems()) {
+                deleted.accept(uri);
+            }
+        }
+        catch (Exception e) {
+            Collections.addAll(failed, batch.getItems());
+            errors.add(new TextNode(e.toString()));
+        }
+        if (listener != null) {
+            listener.onProgress(deletedTraces.sum(), deletedJobs.sum());
+        }
+    }
+
+    private static void run(DataMovementManager dataMovementManager, QueryBatcher queryBatcher) {
+        dataMovementManager.startJob(queryBatcher);
+        queryBatcher.awaitCompletion();
+        dataMovementManager.stopJob(queryBatcher);
+        dataMovementManager.release();
+    }
+
+    private static String toJobId(String uri) {
+        if (uri.startsWith(JOB_URI_PREFIX) && uri.endsWith(JOB_URI_SUFFIX)) {
+            return uri.substring(JOB_URI_PREFIX.length(), uri.length() - JOB_URI_SUFFIX.length());
+        }
+        return uri;
+    }
+
+    private JobDeleteResponse response(List<String> failedJobs) {
+        Set<String> failedJobIds = new LinkedHashSet<>(failedJobs);
+        for (String uri : failedJobUris) {
+            failedJobIds.add(toJobId(uri));
+        }
+        JobDeleteResponse response = new JobDeleteResponse();
+        response.totalCount = deletedJobs.sum();
+        response.errorCount = failedJobIds.size();
+        response.deletedJobs = new ArrayList<>(deletedJobIds);
+        // there can be millions of traces, so only their count is kept
+        response.deletedTraces = new ArrayList<>();
+        response.deletedTraceCount = deletedTraces.sum();
+        response.failedJobs = new ArrayList<>(failedJobIds);
+        response.failedTraces = new ArrayList<>(failedTraces);
+        response.errors = new ArrayList<>(errors);
+        return response;
+    }
+}
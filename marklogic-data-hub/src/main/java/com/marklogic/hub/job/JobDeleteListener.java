@@ -0,0 +1,5 @@
+package com.marklogic.hub.job;
+
+public interface JobDeleteListener {
+    void onProgress(long deletedTraces, long deletedJobs);
+}
@@ -9,6 +9,7 @@ public class JobDeleteResponse {
     public long errorCount = 0;
     public List<String> deletedJobs;
     public List<String> deletedTraces;
+    public long deletedTraceCount = 0;
     public List<String> failedJobs;
     public List<String> failedTraces;
     public List<JsonNode> errors;
@@ -20,7 +21,7 @@ public class JobDeleteResponse {
                 "\n\ttotal jobs deleted: " + totalCount +
                 "\n\ttotal errors: " + errorCount +
                 "\n\tjobs deleted: " + deletedJobs +
-                "\n\ttotal traces deleted: " + deletedTraces.size() +
+                "\n\ttotal traces deleted: " + deletedTraceCount +
                 "\n\terrors: " + errors;
     }
 
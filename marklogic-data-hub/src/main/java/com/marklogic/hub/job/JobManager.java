@@ -15,13 +15,17 @@
  */
 package com.marklogic.hub.job;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.ResourceNotFoundException;
 import com.marklogic.client.Transaction;
-import com.marklogic.client.document.DocumentWriteSet;
 import com.marklogic.client.document.JSONDocumentManager;
 import com.marklogic.client.extensions.ResourceManager;
 import com.marklogic.client.extensions.ResourceServices;
@@ -30,15 +34,23 @@ import com.marklogic.client.io.Format;
 import com.marklogic.client.io.JacksonDatabindHandle;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.util.RequestParameters;
+import com.marklogic.hub.metrics.HubMetrics;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 public class JobManager {
 
     private JSONDocumentManager docMgr;
+    // only read when writing, so one handle serves every write
+    private final DocumentMetadataHandle jobMetadata = new DocumentMetadataHandle().withCollections("job");
     private JobDeleteResource jobDeleteRunner = null;
+    private DatabaseClient jobClient;
+    private DatabaseClient traceClient;
 
     private static final String ISO_8601_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
     private static SimpleDateFormat simpleDateFormat8601;
@@ -62,7 +74,24 @@ public class JobManager {
         .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
         .setDateFormat(simpleDateFormat8601);
 
+    // jobs and checkpoints have no setters, so they are read through their fields
+    private ObjectMapper readMapper = new ObjectMapper()
+        .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+        .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .setDateFormat(simpleDateFormat8601);
+
     public JobManager(DatabaseClient jobClient) {
+        this(jobClient, null);
+    }
+
+    /**
+     * @param jobClient - a client for the jobs database
+     * @param traceClient - a client for the traces database, needed to delete jobs in batches
+     */
+    public JobManager(DatabaseClient jobClient, DatabaseClient traceClient) {
+        this.jobClient = jobClient;
+        this.traceClient = traceClient;
         this.docMgr = jobClient.newJSONDocumentManager();
         this.jobDeleteRunner = new JobDeleteResource(jobClient);
     }
@@ -74,17 +103,114 @@ public class JobManager {
     public void saveJob(Job job, Transaction transaction) {
         JacksonDatabindHandle<Job> contentHandle = new JacksonDatabindHandle<>(job);
         contentHandle.setMapper(objectMapper);
-        DocumentMetadataHandle metadataHandle = new DocumentMetadataHandle();
-        metadataHandle = metadataHandle.withCollections("job");
-        DocumentWriteSet writeSet = docMgr.newWriteSet();
-        writeSet.add("/jobs/" + job.getJobId() + ".json", metadataHandle, contentHandle);
-        docMgr.write(writeSet, transaction);
+        long start = System.nanoTime();
+        try {
+            docMgr.write(jobUri(job.getJobId()), jobMetadata, contentHandle, transaction);
+        }
+        finally {
+            HubMetrics.timer(HubMetrics.JOB_SAVES).recordSince(start);
+        }
+    }
+
+    /**
+     * Saves a job that was already serialized with {@link #toJson(Job)}.
+     */
+    void saveJob(String jobId, String json) {
+        long start = System.nanoTime();
+        try {
+            docMgr.write(jobUri(jobId), jobMetadata, new StringHandle(json).withFormat(Format.JSON));
+        }
+        finally {
+            HubMetrics.timer(HubMetrics.JOB_SAVES).recordSince(start);
+        }
+    }
+
+    String toJson(Job job) {
+        try {
+            return objectMapper.writeValueAsString(job);
+        }
+        catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a writer that saves the job on a background thread, coalescing updates.
+     *
+     * @param job - the job to save
+     * @return the writer. Close it to save the final state of the job.
+     */
+    public JobStatusWriter newStatusWriter(Job job) {
+        return new JobStatusWriter(this, job);
+    }
+
+    private static String jobUri(String jobId) {
+        return "/jobs/" + jobId + ".json";
+    }
+
+    /**
+     * Reads a job document.
+     *
+     * @param jobId - the id of the job
+     * @return the job, or null if there is no such job
+     */
+    public Job getJob(String jobId) {
+        JacksonDatabindHandle<Job> contentHandle = new JacksonDatabindHandle<>(Job.class);
+        contentHandle.setMapper(readMapper);
+        try {
+            return docMgr.read(jobUri(jobId), contentHandle).get();
+        }
+        catch(ResourceNotFoundException e) {
+            return null;
+        }
     }
 
     public JobDeleteResponse deleteJobs(String jobIds) {
         return this.jobDeleteRunner.deleteJobs(jobIds);
     }
 
+    /**
+     * Deletes jobs and their traces with Data Movement jobs, in parallel batches
+     * across the forests, instead of in one request. Only the number of deleted
+     * traces is returned, not their ids.
+     *
+     * @param jobIds - the ids of the jobs to delete
+     * @param batchSize - the number of documents deleted per batch
+     * @param threadCount - the number of batches deleted at once
+     * @param listener - told how many traces and jobs are deleted after each batch, or null
+     * @return the deleted jobs, and the ids that could not be deleted
+     */
+    public JobDeleteResponse deleteJobs(Collection<String> jobIds, int batchSize, int threadCount, JobDeleteListener listener) {
+        return newJobDeleteBatcher(batchSize, threadCount, listener).deleteJobs(jobIds);
+    }
+
+    /**
+     * Deletes the jobs that ended more than the given number of days ago, and
+     * their traces, the same way as {@link #deleteJobs(Collection, int, int, JobDeleteListener)}.
+     * Jobs that are still running are kept.
+     *
+     * @param days - how many days of jobs to keep
+     * @param batchSize - the number of documents deleted per batch
+     * @param threadCount - the number of batches deleted at once
+     * @param listener - told how many traces and jobs are deleted after each batch, or null
+     * @return the deleted jobs, and the ids that could not be deleted
+     */
+    public JobDeleteResponse deleteJobsOlderThan(int days, int batchSize, int threadCount, JobDeleteListener listener) {
+        Date endedBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+        String cutoff;
+        synchronized (simpleDateFormat8601) {
+            cutoff = simpleDateFormat8601.format(endedBefore);
+        }
+        return newJobDeleteBatcher(batchSize, threadCount, listener).deleteJobsEndedBefore(cutoff);
+    }
+
+    private JobDeleteBatcher newJobDeleteBatcher(int batchSize, int threadCount, JobDeleteListener listener) {
+        if (traceClient == null) {
+            throw new IllegalStateException("Deleting jobs in batches needs a client for the traces database");
+        }
+        return new JobDeleteBatcher(jobClient, traceClient, batchSize, threadCount, listener);
+    }
+
     public class JobDeleteResource extends ResourceManager {
         private static final String DELETE_SERVICE = "delete-jobs";
 
@@ -118,6 +244,7 @@ public class JobManager {
                     StringHandle handle = new StringHandle();
                     ObjectMapper objectMapper = new ObjectMapper();
                     resp = objectMapper.readValue(res.getContent(handle).get(), JobDeleteResponse.class);
+                    resp.deletedTraceCount = resp.deletedTraces.size();
                 }
             } catch (IOException e) {
                 e.printStackTrace();
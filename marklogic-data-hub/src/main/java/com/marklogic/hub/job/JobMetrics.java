@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.job;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Throughput of a harmonize job, as of the time it was taken. Latencies
+ * and durations are in milliseconds. The batch latencies are those of the
+ * most recent batches, so they follow changes during a long run.
+ */
+public class JobMetrics {
+    private double docsPerSecond = 0;
+    private long batchLatencyP50 = 0;
+    private long batchLatencyP95 = 0;
+    private long batchLatencyP99 = 0;
+    private long collectorDuration = 0;
+    private long queueDepth = 0;
+    private Map<String, HostMetrics> hosts;
+    private Map<String, Long> pluginTimings;
+
+    private Date timestamp;
+
+    private JobMetrics() {}
+
+    /**
+     * @param docsPerSecond - the documents processed per second since the batches started
+     * @param batchLatencyP50 - the median batch latency
+     * @param batchLatencyP95 - the 95th percentile batch latency
+     * @param batchLatencyP99 - the 99th percentile batch latency
+     * @param collectorDuration - how long the collector ran, or has been running so far
+     * @param queueDepth - the number of collected uris not yet processed
+     * @param hosts - the batches sent to each host
+     * @param pluginTimings - the server time spent in each kind of plugin, by plugin label
+     */
+    public JobMetrics(double docsPerSecond, long batchLatencyP50, long batchLatencyP95, long batchLatencyP99,
+                      long collectorDuration, long queueDepth, Map<String, HostMetrics> hosts,
+                      Map<String, Long> pluginTimings) {
+        this.docsPerSecond = docsPerSecond;
+        this.batchLatencyP50 = batchLatencyP50;
+        this.batchLatencyP95 = batchLatencyP95;
+        this.batchLatencyP99 = batchLatencyP99;
+        this.collectorDuration = collectorDuration;
+        this.queueDepth = queueDepth;
+        this.hosts = hosts;
+        this.pluginTimings = pluginTimings;
+        this.timestamp = new Date();
+    }
+
+    public double getDocsPerSecond() {
+        return docsPerSecond;
+    }
+
+    public long getBatchLatencyP50() {
+        return batchLatencyP50;
+    }
+
+    public long getBatchLatencyP95() {
+        return batchLatencyP95;
+    }
+
+    public long getBatchLatencyP99() {
+        return batchLatencyP99;
+    }
+
+    public long getCollectorDuration() {
+        return collectorDuration;
+    }
+
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    public Map<String, HostMetrics> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * The time the server spent in the content, headers, triples, main and
+     * writer plugins, and in committing batched writes and handing off traces,
+     * added up over all batches. Main leaves out the plugins it calls.
+     *
+     * @return milliseconds by plugin label
+     */
+    public Map<String, Long> getPluginTimings() {
+        return pluginTimings;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * The batches a job sent to one host. A host whose mean latency is well
+     * above the others is worth a look.
+     */
+    public static class HostMetrics {
+        private long batches = 0;
+        private long documents = 0;
+        private long meanLatency = 0;
+
+        private HostMetrics() {}
+
+        public HostMetrics(long batches, long documents, long meanLatency) {
+            this.batches = batches;
+            this.documents = documents;
+            this.meanLatency = meanLatency;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getDocuments() {
+            return documents;
+        }
+
+        public long getMeanLatency() {
+            return meanLatency;
+        }
+    }
+}
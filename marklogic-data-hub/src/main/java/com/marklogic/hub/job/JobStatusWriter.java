@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Writes the job document of a running job on a background thread, so that
+ * status changes and progress counts never wait for the jobs database.
+ *
+ * Updates made while a write is pending are coalesced into it, and writes
+ * go out at most once per write interval. The job is serialized while
+ * holding its lock, so threads that change the job should do so
+ * synchronized on it. {@link #close()} writes the final state on the
+ * calling thread.
+ */
+public class JobStatusWriter implements AutoCloseable {
+
+    public static final long DEFAULT_WRITE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Job job;
+    private final Function<Job, String> serializer;
+    private final BiConsumer<String, String> writer;
+    private final long writeInterval;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile long lastWrite = 0;
+    private ScheduledFuture<?> snapshots;
+
+    /**
+     * @param jobManager - the job manager that saves the job
+     * @param job - the job to write
+     */
+    public JobStatusWriter(JobManager jobManager, Job job) {
+        this(job, jobManager::toJson, jobManager::saveJob, DEFAULT_WRITE_INTERVAL);
+    }
+
+    JobStatusWriter(Job job, Function<Job, String> serializer, BiConsumer<String, String> writer, long writeInterval) {
+        this.job = job;
+        this.serializer = serializer;
+        this.writer = writer;
+        this.writeInterval = writeInterval;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "job-status-" + job.getJobId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // writes that have not started when the writer closes are covered by the final write
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Schedules a write of the job as it is when the write goes out.
+     */
+    public void update() {
+        if (pending.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastWrite + writeInterval - System.currentTimeMillis());
+            try {
+                executor.schedule(this::write, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RuntimeException e) {
+                // closed. the final write has the latest state
+                pending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Updates the job with the given snapshot and writes it, every interval,
+     * until the writer is closed.
+     *
+     * @param interval - the time between snapshots, in milliseconds
+     * @param snapshot - copies the progress of the run into the job. Runs while holding the job's lock.
+     */
+    public synchronized void snapshotEvery(long interval, Runnable snapshot) {
+        if (snapshots != null) {
+            snapshots.cancel(false);
+        }
+        snapshots = executor.scheduleAtFixedRate(() -> {
+            synchronized (job) {
+                snapshot.run();
+            }
+            update();
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the snapshots, waits for a write that is in progress to finish and
+     * writes the job one last time. Writes that have not started yet are dropped,
+     * because the last write has the latest state.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (snapshots != null) {
+                snapshots.cancel(false);
+            }
+        }
+        // not shutdownNow, which would interrupt a write that is in progress
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.set(false);
+        writer.accept(job.getJobId(), serialize());
+    }
+
+    private void write() {
+        pending.set(false);
+        lastWrite = System.currentTimeMillis();
+        try {
+            writer.accept(job.getJobId(), serialize());
+        }
+        catch (Exception e) {
+            // the next update or the final write tries again
+            logger.warn("Failed to save the status of job " + job.getJobId(), e);
+        }
+    }
+
+    private String serialize() {
+        synchronized (job) {
+            return serializer.apply(job);
+        }
+    }
+}
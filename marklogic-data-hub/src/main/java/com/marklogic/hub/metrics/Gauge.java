@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A value that goes up and down, such as the number of batches in flight.
+ *
+ * A gauge either keeps its own value, changed with {@link #increment()} and
+ * {@link #decrement()}, or reads it from elsewhere each time it is asked for.
+ */
+public class Gauge implements GaugeMBean, Metric {
+
+    private final AtomicLong value = new AtomicLong();
+    private final LongSupplier source;
+
+    Gauge() {
+        this.source = null;
+    }
+
+    Gauge(LongSupplier source) {
+        this.source = source;
+    }
+
+    public void increment() {
+        checkOwnValue();
+        value.incrementAndGet();
+    }
+
+    public void decrement() {
+        checkOwnValue();
+        value.decrementAndGet();
+    }
+
+    @Override
+    public long getValue() {
+        return source != null ? source.getAsLong() : value.get();
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        return Collections.singletonMap("value", getValue());
+    }
+
+    private void checkOwnValue() {
+        if (source != null) {
+            throw new UnsupportedOperationException("This gauge reads its value from elsewhere");
+        }
+    }
+}
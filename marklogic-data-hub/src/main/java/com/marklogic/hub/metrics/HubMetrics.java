@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * The timers, counters and gauges of the data hub in this JVM.
+ *
+ * Every metric is also registered as an MBean named
+ * <code>com.marklogic.hub:type=&lt;Timer|Counter|Gauge&gt;,name=&lt;name&gt;</code>,
+ * so JMX tools such as JConsole can watch a running flow. {@link #snapshot()}
+ * returns all of them at once for export.
+ */
+public class HubMetrics {
+
+    public static final String COLLECTOR_CALLS = "collector.calls";
+    public static final String COLLECTOR_FAILURES = "collector.failures";
+    // followed by the pool name and one of leased, available, pending or max
+    public static final String COLLECTOR_POOL = "collector.pool";
+    public static final String COLLECTOR_URIS = "collector.uris";
+    public static final String FLOW_BATCHES = "flow.batches";
+    public static final String FLOW_BATCH_FAILURES = "flow.batches.failures";
+    public static final String FLOW_BATCHES_IN_FLIGHT = "flow.batches.inFlight";
+    public static final String FLOW_DOCUMENTS = "flow.documents";
+    public static final String FLOW_ERRORS = "flow.errors";
+    public static final String INPUT_BYTES_READ = "input.bytes.read";
+    public static final String INPUT_FILES_READ = "input.files.read";
+    public static final String INPUT_FILES_SCANNED = "input.files.scanned";
+    public static final String JOB_SAVES = "job.saves";
+    public static final String MODULE_LOADS = "modules.loads";
+    public static final String MODULES_LOADED = "modules.loaded";
+
+    private static final String DOMAIN = "com.marklogic.hub";
+    // characters that are not allowed in an unquoted ObjectName value
+    private static final Pattern UNQUOTED_VALUE = Pattern.compile("[^,=:\"*?\\n]*");
+    private static final Logger LOGGER = LoggerFactory.getLogger(HubMetrics.class);
+
+    private static final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    public static Timer timer(String name) {
+        return get(name, Timer.class, Timer::new);
+    }
+
+    public static Counter counter(String name) {
+        return get(name, Counter.class, Counter::new);
+    }
+
+    public static Gauge gauge(String name) {
+        return get(name, Gauge.class, Gauge::new);
+    }
+
+    /**
+     * Returns the gauge with the given name, creating it if needed.
+     * A new gauge reads its value from the given source whenever it is asked for.
+     *
+     * @param name - the name of the gauge
+     * @param source - where a new gauge reads its value from
+     * @return the gauge
+     */
+    public static Gauge gauge(String name, LongSupplier source) {
+        return get(name, Gauge.class, () -> new Gauge(source));
+    }
+
+    /**
+     * @return the values of every metric, by metric name in name order
+     */
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> values = new TreeMap<>();
+        metrics.forEach((name, metric) -> values.put(name, new LinkedHashMap<>(metric.snapshot())));
+        return values;
+    }
+
+    /**
+     * Forgets the metric with the given name, if there is one, and unregisters its MBean.
+     *
+     * @param name - the name of the metric
+     */
+    public static void remove(String name) {
+        Metric metric = metrics.remove(name);
+        if (metric != null) {
+            unregister(name, metric);
+        }
+    }
+
+    /**
+     * Forgets every metric and unregisters its MBean.
+     */
+    public static void reset() {
+        for (String name : metrics.keySet()) {
+            remove(name);
+        }
+    }
+
+    private static <T extends Metric> T get(String name, Class<T> type, Supplier<T> factory) {
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(name, n -> {
+                T created = factory.get();
+                register(n, created);
+                return created;
+            });
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName() +
+                ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private static void register(String name, Metric metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name, metric);
+            // a Gradle daemon loads the plugin again for every build, so replace what the last build left
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metric, objectName);
+        }
+        catch (JMException | SecurityException e) {
+            LOGGER.debug("Could not register metric " + name + " with JMX", e);
+        }
+    }
+
+    private static void unregister(String name, Metric metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name, metric);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        }
+        catch (JMException | SecurityException e) {
+            LOGGER.debug("Could not unregister metric " + name + " from JMX", e);
+        }
+    }
+
+    private static ObjectName objectName(String name, Metric metric) throws JMException {
+        String value = UNQUOTED_VALUE.matcher(name).matches() ? name : ObjectName.quote(name);
+        return new ObjectName(DOMAIN + ":type=" + metric.getClass().getSimpleName() + ",name=" + value);
+    }
+}
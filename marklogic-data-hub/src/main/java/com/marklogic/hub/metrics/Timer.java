@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often something happened and how long it took.
+ */
+public class Timer implements TimerMBean, Metric {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Timer() {}
+
+    /**
+     * @param duration - how long it took
+     * @param unit - the time unit of the duration
+     */
+    public void record(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Records the time since the given start.
+     *
+     * @param startNanos - the start, from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getTotalTimeMillis() {
+        return toMillis(total.sum());
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = getCount();
+        return count > 0 ? toMillis(total.sum()) / count : 0;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return toMillis(max.get());
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", getCount());
+        values.put("totalTimeMillis", getTotalTimeMillis());
+        values.put("meanMillis", getMeanMillis());
+        values.put("maxMillis", getMaxMillis());
+        return values;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
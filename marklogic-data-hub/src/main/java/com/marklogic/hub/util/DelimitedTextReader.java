@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the rows of delimited text one at a time, so a file of any size can
+ * be split without holding it in memory. Fields may be quoted with double
+ * quotes, in which case they can hold the delimiter, line breaks and doubled
+ * quotes. Empty lines are skipped.
+ */
+class DelimitedTextReader {
+
+    private final Reader reader;
+    private final char delimiter;
+    private int next;
+    private long line = 0;
+    private long rowStart = 0;
+
+    /**
+     * @param reader - the text, best buffered
+     * @param delimiter - the character between fields
+     */
+    DelimitedTextReader(Reader reader, char delimiter) throws IOException {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.next = reader.read();
+    }
+
+    /**
+     * @return the fields of the next row, or null at the end of the text
+     * @throws IOException if the text cannot be read or a quoted field is not closed
+     */
+    List<String> readRow() throws IOException {
+        // skip empty lines
+        while (next == '\r' || next == '\n') {
+            if (next == '\n') {
+                line++;
+            }
+            next = reader.read();
+        }
+        if (next == -1) {
+            return null;
+        }
+        line++;
+        rowStart = line;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (next == -1) {
+                    throw new IOException("quoted field not closed at line " + line);
+                }
+                if (next == '"') {
+                    next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                        next = reader.read();
+                    }
+                    else {
+                        quoted = false;
+                    }
+                    continue;
+                }
+                if (next == '\n') {
+                    line++;
+                }
+                field.append((char) next);
+                next = reader.read();
+            }
+            else if (next == '"' && field.length() == 0) {
+                quoted = true;
+                next = reader.read();
+            }
+            else if (next == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                next = reader.read();
+            }
+            else if (next == '\r' || next == '\n' || next == -1) {
+                fields.add(field.toString());
+                if (next == '\r') {
+                    next = reader.read();
+                }
+                if (next == '\n') {
+                    next = reader.read();
+                }
+                return fields;
+            }
+            else {
+                field.append((char) next);
+                next = reader.read();
+            }
+        }
+    }
+
+    /**
+     * @return the line the last row started on, counting from 1
+     */
+    long getLine() {
+        return rowStart;
+    }
+}
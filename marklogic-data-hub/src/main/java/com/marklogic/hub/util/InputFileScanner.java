@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Lists the files under an input path on a pool of threads, one directory
+ * per task, so that a tree with many directories is listed in parallel.
+ *
+ * The files that are accepted go into a bounded queue that the readers take
+ * from. When the readers fall behind, the queue fills up and the listing
+ * waits, so only a limited number of files are ever read ahead.
+ *
+ * Symbolic links are followed, as mlcp does, but each directory is listed
+ * only once, so a link back up the tree does not make the listing recurse
+ * forever and a directory reached through two links is not loaded twice.
+ */
+class InputFileScanner {
+
+    // marks the end of the files. it is put back for the next reader to see
+    private static final Path END = Paths.get("");
+
+    private final Path root;
+    private final BiPredicate<Path, Path> filter;
+    private final Consumer<String> errorHandler;
+    private final InputRates rates;
+    private final BlockingQueue<Path> files;
+    private final ExecutorService executor;
+    private final AtomicInteger pendingDirectories = new AtomicInteger();
+    private final Set<Object> visitedDirectories = ConcurrentHashMap.newKeySet();
+    private volatile boolean finished = false;
+
+    /**
+     * @param root - the input path, a directory or a single file
+     * @param filter - tells whether to load a file, given the input path and the file
+     * @param threadCount - the number of directories to list at once
+     * @param readAhead - the most files to queue for the readers
+     * @param rates - counts the files accepted
+     * @param errorHandler - receives the directories that could not be listed
+     */
+    InputFileScanner(Path root, BiPredicate<Path, Path> filter, int threadCount, int readAhead,
+                     InputRates rates, Consumer<String> errorHandler) {
+        this.root = root;
+        this.filter = filter;
+        this.rates = rates;
+        this.errorHandler = errorHandler;
+        this.files = new ArrayBlockingQueue<>(Math.max(1, readAhead));
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threadCount), runnable -> {
+            Thread thread = new Thread(runnable, "input-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts listing the files.
+     */
+    void start() {
+        if (Files.isDirectory(root)) {
+            pendingDirectories.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    firstVisit(root, Files.readAttributes(root, BasicFileAttributes.class));
+                }
+                catch (IOException e) {
+                    // listing it reports the error
+                }
+                scan(root);
+            });
+        }
+        else {
+            executor.execute(() -> {
+                try {
+                    if (Files.isRegularFile(root) && filter.test(root.toAbsolutePath().getParent(), root.toAbsolutePath())) {
+                        rates.scanned();
+                        files.put(root);
+                    }
+                    else if (!Files.exists(root)) {
+                        errorHandler.accept("input path " + root + " does not exist");
+                    }
+                    finish();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    private void scan(Path directory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                }
+                catch (IOException e) {
+                    // such as a broken link. the rest of the directory is still listed
+                    errorHandler.accept("could not read " + entry + ": " + e.getMessage());
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (firstVisit(entry, attributes)) {
+                        pendingDirectories.incrementAndGet();
+                        executor.execute(() -> scan(entry));
+                    }
+                }
+                else if (attributes.isRegularFile() && filter.test(root, entry)) {
+                    rates.scanned();
+                    files.put(entry);
+                }
+            }
+        }
+        catch (IOException e) {
+            errorHandler.accept("could not list " + directory + ": " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            if (pendingDirectories.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+    }
+
+    // true the first time a directory is seen, however it was reached
+    private boolean firstVisit(Path directory, BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        if (key == null) {
+            // not every file system has file keys
+            try {
+                key = directory.toRealPath();
+            }
+            catch (IOException e) {
+                key = directory.toAbsolutePath().normalize();
+            }
+        }
+        return visitedDirectories.add(key);
+    }
+
+    private void finish() {
+        finished = true;
+        rates.scanFinished();
+        executor.shutdown();
+        try {
+            files.put(END);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the next file. Any number of readers can call this at once.
+     *
+     * @return the next file, or null once every file has been taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Path next() throws InterruptedException {
+        Path file = files.take();
+        if (file == END) {
+            files.put(END);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Stops listing, for when the readers give up early.
+     */
+    void stop() {
+        executor.shutdownNow();
+        files.clear();
+        files.offer(END);
+    }
+
+    /**
+     * @return true once every directory has been listed
+     */
+    boolean isFinished() {
+        return finished;
+    }
+}
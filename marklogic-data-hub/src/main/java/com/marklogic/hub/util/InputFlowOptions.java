@@ -0,0 +1,395 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The mlcp options of an input flow, as saved by the quick-start, read for
+ * {@link InputFlowRunner}. Values may be quoted the way they are on the mlcp
+ * command line.
+ *
+ * By default the files under input_file_path are loaded one document per
+ * file, with mlcp's default uri (the absolute path of the file) changed by
+ * output_uri_replace, output_uri_prefix and output_uri_suffix.
+ *
+ * With input_file_type delimited_text each row of a file is a document, with
+ * the first row naming the fields and the field named by uri_id (the first
+ * one by default) as its uri. With delimited_json each line of a file is a
+ * json document, named after the file and line unless uri_id names a
+ * property. With input_compressed the files are zip or gzip, picked by
+ * input_compression_codec or by the file extension.
+ *
+ * The files can be picked by mlcp's input_file_pattern, a regex on the file
+ * name, and by two options of its own: input_file_extensions, a comma
+ * separated list of extensions, and input_file_glob, a glob such as
+ * <code>**&#47;2018/*.json</code> on the path of the file under the input path.
+ */
+class InputFlowOptions {
+
+    // the mlcp defaults
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final int DEFAULT_THREAD_COUNT = 4;
+
+    static final String DOCUMENTS = "documents";
+    static final String DELIMITED_TEXT = "delimited_text";
+    static final String DELIMITED_JSON = "delimited_json";
+    static final String ZIP = "zip";
+    static final String GZIP = "gzip";
+
+    private String inputFilePath;
+    private String inputFileType = DOCUMENTS;
+    private boolean compressed = false;
+    private String compressionCodec;
+    private char delimiter = ',';
+    private String delimitedRootName = "root";
+    private String uriId;
+    private String documentType;
+    private Pattern filePattern;
+    private List<String> fileExtensions = new ArrayList<>();
+    private PathMatcher fileGlob;
+    private List<String> collections = new ArrayList<>();
+    private List<String[]> permissions = new ArrayList<>();
+    private List<String[]> uriReplacements = new ArrayList<>();
+    private String uriPrefix = "";
+    private String uriSuffix = "";
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private Map<String, String> transformParams = new LinkedHashMap<>();
+
+    private InputFlowOptions() {}
+
+    /**
+     * @param mlcpOptions - the mlcp options of the flow
+     * @return the options
+     * @throws IllegalArgumentException if an option is missing or not supported
+     */
+    static InputFlowOptions fromMlcpOptions(JsonNode mlcpOptions) {
+        InputFlowOptions options = new InputFlowOptions();
+
+        options.inputFilePath = option(mlcpOptions, "input_file_path");
+        if (options.inputFilePath == null || options.inputFilePath.isEmpty()) {
+            throw new IllegalArgumentException("input_file_path is required");
+        }
+
+        String inputFileType = option(mlcpOptions, "input_file_type");
+        if (inputFileType != null) {
+            options.inputFileType = inputFileType.toLowerCase(Locale.ROOT);
+            if (!options.inputFileType.equals(DOCUMENTS) && !options.inputFileType.equals(DELIMITED_TEXT) &&
+                !options.inputFileType.equals(DELIMITED_JSON)) {
+                throw new IllegalArgumentException("input_file_type " + inputFileType + " is not supported without mlcp");
+            }
+        }
+
+        options.compressed = Boolean.parseBoolean(option(mlcpOptions, "input_compressed"));
+        String codec = option(mlcpOptions, "input_compression_codec");
+        if (codec != null) {
+            options.compressionCodec = codec.toLowerCase(Locale.ROOT);
+            if (!options.compressionCodec.equals(ZIP) && !options.compressionCodec.equals(GZIP)) {
+                throw new IllegalArgumentException("input_compression_codec " + codec + " is not supported without mlcp");
+            }
+        }
+
+        String delimiter = option(mlcpOptions, "delimiter");
+        if (delimiter != null) {
+            if (delimiter.length() != 1) {
+                throw new IllegalArgumentException("delimiter must be a single character");
+            }
+            options.delimiter = delimiter.charAt(0);
+        }
+        String rootName = option(mlcpOptions, "delimited_root_name");
+        if (rootName != null) {
+            options.delimitedRootName = rootName;
+        }
+        options.uriId = option(mlcpOptions, "uri_id");
+        if (options.uriId == null) {
+            options.uriId = option(mlcpOptions, "delimited_uri_id");
+        }
+
+        String filePattern = option(mlcpOptions, "input_file_pattern");
+        if (filePattern != null) {
+            options.filePattern = Pattern.compile(filePattern);
+        }
+        String fileExtensions = option(mlcpOptions, "input_file_extensions");
+        if (fileExtensions != null) {
+            for (String extension : fileExtensions.split(",")) {
+                if (!extension.trim().isEmpty()) {
+                    options.fileExtensions.add("." + extension.trim().replaceFirst("^\\.", "").toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        String fileGlob = option(mlcpOptions, "input_file_glob");
+        if (fileGlob != null) {
+            options.fileGlob = FileSystems.getDefault().getPathMatcher("glob:" + fileGlob);
+        }
+
+        String documentType = option(mlcpOptions, "document_type");
+        if (documentType != null && !documentType.equalsIgnoreCase("mixed")) {
+            options.documentType = documentType.toLowerCase(Locale.ROOT);
+        }
+
+        String collections = option(mlcpOptions, "output_collections");
+        if (collections != null) {
+            for (String collection : collections.split(",")) {
+                if (!collection.trim().isEmpty()) {
+                    options.collections.add(collection.trim());
+                }
+            }
+        }
+
+        String permissions = option(mlcpOptions, "output_permissions");
+        if (permissions != null) {
+            String[] parts = permissions.split(",");
+            if (parts.length % 2 != 0) {
+                throw new IllegalArgumentException("output_permissions must be role,capability pairs");
+            }
+            for (int i = 0; i < parts.length; i += 2) {
+                options.permissions.add(new String[] { parts[i].trim(), parts[i + 1].trim() });
+            }
+        }
+
+        String replace = option(mlcpOptions, "output_uri_replace");
+        if (replace != null) {
+            String[] parts = replace.split(",");
+            if (parts.length % 2 != 0) {
+                throw new IllegalArgumentException("output_uri_replace must be regex,'string' pairs");
+            }
+            for (int i = 0; i < parts.length; i += 2) {
+                options.uriReplacements.add(new String[] { parts[i], parts[i + 1].replaceAll("^'|'$", "") });
+            }
+        }
+
+        String prefix = option(mlcpOptions, "output_uri_prefix");
+        if (prefix != null) {
+            options.uriPrefix = prefix;
+        }
+        String suffix = option(mlcpOptions, "output_uri_suffix");
+        if (suffix != null) {
+            options.uriSuffix = suffix;
+        }
+
+        String batchSize = option(mlcpOptions, "batch_size");
+        if (batchSize != null) {
+            options.batchSize = Math.max(1, Integer.parseInt(batchSize));
+        }
+        String threadCount = option(mlcpOptions, "thread_count");
+        if (threadCount != null) {
+            options.threadCount = Math.max(1, Integer.parseInt(threadCount));
+        }
+
+        String transformParam = option(mlcpOptions, "transform_param");
+        if (transformParam != null) {
+            // a comma only starts a new parameter when a name= follows, so the json options can have commas
+            for (String pair : transformParam.split(",(?=[\\w-]+=)")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    options.transformParams.put(pair.substring(0, equals), urlDecode(pair.substring(equals + 1)));
+                }
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * @return the value of an mlcp option without its quotes, or null if it is not set
+     */
+    private static String option(JsonNode mlcpOptions, String name) {
+        JsonNode node = mlcpOptions.get(name);
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        String value = node.asText();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            // quotes inside a quoted value are doubled
+            value = value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    private static String urlDecode(String value) {
+        // the options are json, which may hold a literal +
+        if (value.startsWith("{")) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param root - the input path
+     * @param file - a file under the input path
+     * @return true if the file passes the input_file_pattern, input_file_extensions and input_file_glob filters
+     */
+    boolean accepts(Path root, Path file) {
+        String name = file.getFileName().toString();
+        if (filePattern != null && !filePattern.matcher(name).matches()) {
+            return false;
+        }
+        if (!fileExtensions.isEmpty()) {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            if (fileExtensions.stream().noneMatch(lowerName::endsWith)) {
+                return false;
+            }
+        }
+        return fileGlob == null || fileGlob.matches(root.relativize(file));
+    }
+
+    /**
+     * @param file - a file under the input path
+     * @return the uri of the document loaded from the file
+     */
+    String toUri(Path file) {
+        return toUri(file.toAbsolutePath().toUri().getPath());
+    }
+
+    /**
+     * @param uri - the uri of a document before the output_uri options
+     * @return the uri with output_uri_replace, output_uri_prefix and output_uri_suffix applied
+     */
+    String toUri(String uri) {
+        for (String[] replacement : uriReplacements) {
+            uri = uri.replaceAll(replacement[0], replacement[1]);
+        }
+        return uriPrefix + uri + uriSuffix;
+    }
+
+    /**
+     * @param file - a file under the input path
+     * @return xml, json, text or binary
+     */
+    String documentType(Path file) {
+        return documentType(file.getFileName().toString());
+    }
+
+    /**
+     * @param name - the name of a file, or of an entry in a zip file
+     * @return xml, json, text or binary
+     */
+    String documentType(String name) {
+        if (inputFileType.equals(DELIMITED_JSON)) {
+            return "json";
+        }
+        if (inputFileType.equals(DELIMITED_TEXT)) {
+            return "json".equals(documentType) ? "json" : "xml";
+        }
+        if (documentType != null) {
+            return documentType;
+        }
+        name = name.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xml")) {
+            return "xml";
+        }
+        if (name.endsWith(".json")) {
+            return "json";
+        }
+        if (name.endsWith(".txt") || name.endsWith(".csv")) {
+            return "text";
+        }
+        return "binary";
+    }
+
+    String getInputFilePath() {
+        return inputFilePath;
+    }
+
+    /**
+     * @return documents, delimited_text or delimited_json
+     */
+    String getInputFileType() {
+        return inputFileType;
+    }
+
+    /**
+     * @return true if a file can hold more than one document, so it is read as a stream
+     */
+    boolean isSplit() {
+        return compressed || !inputFileType.equals(DOCUMENTS);
+    }
+
+    /**
+     * @param file - a file under the input path
+     * @return zip or gzip for a compressed file, or null if the input is not compressed
+     */
+    String compressionCodec(Path file) {
+        if (!compressed) {
+            return null;
+        }
+        if (compressionCodec != null) {
+            return compressionCodec;
+        }
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".gz") || name.endsWith(".gzip") ? GZIP : ZIP;
+    }
+
+    char getDelimiter() {
+        return delimiter;
+    }
+
+    String getDelimitedRootName() {
+        return delimitedRootName;
+    }
+
+    /**
+     * @return the field or property that holds the uri of each record, or null for the default
+     */
+    String getUriId() {
+        return uriId;
+    }
+
+    List<String> getCollections() {
+        return Collections.unmodifiableList(collections);
+    }
+
+    /**
+     * @return role and capability pairs
+     */
+    List<String[]> getPermissions() {
+        return Collections.unmodifiableList(permissions);
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return the parameters of the flow transform, such as entity-name, flow-name and options
+     */
+    Map<String, String> getTransformParams() {
+        return Collections.unmodifiableMap(transformParams);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.hub.HubConfig;
+import com.marklogic.hub.flow.Flow;
+import com.marklogic.hub.flow.FlowStatusListener;
+import com.marklogic.hub.job.Job;
+import com.marklogic.hub.job.JobManager;
+import com.marklogic.hub.job.JobStatus;
+import com.marklogic.hub.job.JobStatusWriter;
+import com.marklogic.hub.metrics.HubMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs an input flow in this JVM with the Data Movement SDK, as an
+ * alternative to {@link MlcpRunner}, which starts mlcp in a JVM of its own.
+ *
+ * The directories under input_file_path are listed in parallel by an
+ * {@link InputFileScanner}, which stays a bounded number of files ahead of
+ * the readers. The files are read on a pool of threads and written with a
+ * {@link WriteBatcher} through the run-flow transform. The counts of each
+ * batch are reported to the {@link FlowStatusListener} as soon as the batch
+ * is written, along with the separate scan, read and write rates, which
+ * also go first in the job output. Zip and gzip files, delimited text and
+ * json lines are streamed a record at a time by an {@link InputRecordReader}.
+ * It takes the same mlcp options as {@link MlcpRunner}, see
+ * {@link InputFlowOptions} for the ones it supports.
+ */
+public class InputFlowRunner extends Thread {
+
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final int MAX_ERROR_MESSAGES = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private JobManager jobManager;
+    private Flow flow;
+    private JsonNode mlcpOptions;
+    private String jobId = UUID.randomUUID().toString();
+    private AtomicLong successfulEvents = new AtomicLong(0);
+    private AtomicLong failedEvents = new AtomicLong(0);
+    private AtomicLong successfulBatches = new AtomicLong(0);
+    private AtomicLong failedBatches = new AtomicLong(0);
+    private final List<String> errorMessages = new ArrayList<>();
+    private FlowStatusListener flowStatusListener;
+    private DatabaseClient databaseClient;
+
+    public InputFlowRunner(HubConfig hubConfig, Flow flow, DatabaseClient databaseClient, JsonNode mlcpOptions, FlowStatusListener statusListener) {
+        super();
+
+        this.jobManager = new JobManager(hubConfig.newJobDbClient());
+        this.flowStatusListener = statusListener;
+        this.flow = flow;
+        this.mlcpOptions = mlcpOptions;
+        this.databaseClient = databaseClient;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    @Override
+    public void run() {
+        Job job = Job.withFlow(flow)
+            .withJobId(jobId);
+        jobManager.saveJob(job);
+
+        JobStatusWriter statusWriter = jobManager.newStatusWriter(job);
+        statusWriter.snapshotEvery(PROGRESS_INTERVAL,
+            () -> job.setCounts(successfulEvents.get(), failedEvents.get(), successfulBatches.get(), failedBatches.get()));
+
+        try {
+            InputFlowOptions options = InputFlowOptions.fromMlcpOptions(mlcpOptions);
+            load(options);
+
+            status(100, "");
+        }
+        catch (Exception e) {
+            error(e.toString());
+            throw new RuntimeException(e);
+        }
+        finally {
+            JobStatus status;
+            if (failedEvents.get() > 0 && successfulEvents.get() > 0) {
+                status = JobStatus.FINISHED_WITH_ERRORS;
+            }
+            else if (failedEvents.get() == 0 && successfulEvents.get() > 0) {
+                status = JobStatus.FINISHED;
+            }
+            else {
+                status = JobStatus.FAILED;
+            }
+
+            synchronized (job) {
+                synchronized (errorMessages) {
+                    job.withJobOutput(new ArrayList<>(errorMessages));
+                }
+                job.withStatus(status)
+                    .setCounts(successfulEvents.get(), failedEvents.get(), successfulBatches.get(), failedBatches.get())
+                    .withEndTime(new Date());
+            }
+            statusWriter.close();
+        }
+    }
+
+    private void load(InputFlowOptions options) throws InterruptedException {
+        InputRates rates = new InputRates();
+
+        DocumentMetadataHandle metadata = new DocumentMetadataHandle()
+            .withCollections(options.getCollections().toArray(new String[0]));
+        for (String[] permission : options.getPermissions()) {
+            metadata.getPermissions().add(permission[0],
+                DocumentMetadataHandle.Capability.valueOf(permission[1].toUpperCase(Locale.ROOT).replace('-', '_')));
+        }
+
+        ServerTransform transform = new ServerTransform("run-flow");
+        for (Map.Entry<String, String> param : options.getTransformParams().entrySet()) {
+            transform.addParameter(param.getKey(), param.getValue());
+        }
+        transform.addParameter("job-id", jobId);
+
+        DataMovementManager dataMovementManager = databaseClient.newDataMovementManager();
+        WriteBatcher writeBatcher = dataMovementManager.newWriteBatcher()
+            .withBatchSize(options.getBatchSize())
+            .withThreadCount(options.getThreadCount())
+            .withJobId(jobId)
+            .withTransform(transform)
+            .onBatchSuccess(batch -> {
+                successfulBatches.incrementAndGet();
+                successfulEvents.addAndGet(batch.getItems().length);
+                rates.written(batch.getItems().length);
+                HubMetrics.counter(HubMetrics.FLOW_DOCUMENTS).increment(batch.getItems().length);
+                batchFinished(options, rates, "batch " + batch.getJobBatchNumber() + ": " + batch.getItems().length +
+                    " documents loaded. " + rates);
+            })
+            .onBatchFailure((batch, throwable) -> {
+                failedBatches.incrementAndGet();
+                failedEvents.addAndGet(batch.getItems().length);
+                HubMetrics.counter(HubMetrics.FLOW_DOCUMENTS).increment(batch.getItems().length);
+                HubMetrics.counter(HubMetrics.FLOW_ERRORS).increment(batch.getItems().length);
+                error(throwable.getMessage());
+                batchFinished(options, rates, "batch " + batch.getJobBatchNumber() + ": " + batch.getItems().length +
+                    " documents failed: " + throwable.getMessage());
+            });
+        dataMovementManager.startJob(writeBatcher);
+
+        // each reader has a batch worth of files listed ahead of it
+        int threadCount = options.getThreadCount();
+        InputFileScanner scanner = new InputFileScanner(Paths.get(options.getInputFilePath()), options::accepts,
+            threadCount, threadCount * options.getBatchSize(), rates, this::error);
+        InputRecordReader recordReader = new InputRecordReader(options, message -> {
+            failedEvents.incrementAndGet();
+            error(message);
+        });
+        ExecutorService readers = Executors.newFixedThreadPool(threadCount);
+        try {
+            scanner.start();
+            for (int i = 0; i < threadCount; i++) {
+                readers.execute(() -> {
+                    try {
+                        Path file;
+                        while ((file = scanner.next()) != null) {
+                            try {
+                                if (options.isSplit()) {
+                                    // archives and delimited files go to the batcher a record at a time
+                                    recordReader.read(file, (uri, content, documentType) -> writeBatcher.add(uri, metadata,
+                                        new BytesHandle(content).withFormat(Format.valueOf(documentType.toUpperCase(Locale.ROOT)))));
+                                    rates.read(file.toFile().length());
+                                }
+                                else {
+                                    byte[] content = readFile(file);
+                                    rates.read(content.length);
+                                    Format format = Format.valueOf(options.documentType(file).toUpperCase(Locale.ROOT));
+                                    writeBatcher.add(options.toUri(file), metadata, new BytesHandle(content).withFormat(format));
+                                }
+                            }
+                            catch (IOException e) {
+                                failedEvents.incrementAndGet();
+                                error("could not read " + file + ": " + e.getMessage());
+                            }
+                            catch (RuntimeException e) {
+                                // such as an unknown document type, or a batcher that was stopped.
+                                // the file is counted as failed and the reader moves on to the next one
+                                failedEvents.incrementAndGet();
+                                error("could not load " + file + ": " + e);
+                            }
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            readers.shutdown();
+            readers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        finally {
+            readers.shutdownNow();
+            scanner.stop();
+            writeBatcher.flushAndWait();
+            dataMovementManager.stopJob(writeBatcher);
+            logger.info(rates.toString());
+            synchronized (errorMessages) {
+                errorMessages.add(0, rates.toString());
+            }
+        }
+    }
+
+    /**
+     * Reads a whole file through a channel, straight into an array of its size.
+     */
+    static byte[] readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file is larger than 2 GB");
+            }
+            byte[] content = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            return content;
+        }
+    }
+
+    private void batchFinished(InputFlowOptions options, InputRates rates, String message) {
+        // a file that is split holds an unknown number of records, so those count the files read
+        long done = options.isSplit() ? rates.getRead() : successfulEvents.get() + failedEvents.get();
+        // the total is only known once the scan is done, and 100 is only sent once the whole job is done
+        long total = rates.getScanned();
+        int percent = rates.isScanFinished() && total > 0 ? (int) Math.min(99, done * 100 / total) : 0;
+        status(percent, message);
+    }
+
+    private void status(int percentComplete, String message) {
+        if (flowStatusListener != null) {
+            flowStatusListener.onStatusChange(jobId, percentComplete, message);
+        }
+    }
+
+    private void error(String message) {
+        logger.error(message);
+        synchronized (errorMessages) {
+            if (errorMessages.size() < MAX_ERROR_MESSAGES) {
+                errorMessages.add(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import com.marklogic.hub.metrics.HubMetrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The rates of the three stages of loading input files: listing them,
+ * reading them and writing them to the database. Comparing them shows
+ * which stage holds the load up. Each count is also added to the
+ * {@link HubMetrics} of this JVM.
+ */
+class InputRates {
+
+    private final LongSupplier clock;
+    private final long start;
+    private volatile Long scanEnd;
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder read = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    InputRates() {
+        this(System::nanoTime);
+    }
+
+    InputRates(LongSupplier clock) {
+        this.clock = clock;
+        this.start = clock.getAsLong();
+    }
+
+    void scanned() {
+        scanned.increment();
+        HubMetrics.counter(HubMetrics.INPUT_FILES_SCANNED).increment();
+    }
+
+    void scanFinished() {
+        if (scanEnd == null) {
+            scanEnd = clock.getAsLong();
+        }
+    }
+
+    boolean isScanFinished() {
+        return scanEnd != null;
+    }
+
+    /**
+     * @param bytes - the size of the file read
+     */
+    void read(long bytes) {
+        read.increment();
+        bytesRead.add(bytes);
+        HubMetrics.counter(HubMetrics.INPUT_FILES_READ).increment();
+        HubMetrics.counter(HubMetrics.INPUT_BYTES_READ).increment(bytes);
+    }
+
+    /**
+     * @param documents - the number of documents written
+     */
+    void written(long documents) {
+        written.add(documents);
+    }
+
+    long getScanned() {
+        return scanned.sum();
+    }
+
+    long getRead() {
+        return read.sum();
+    }
+
+    long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return the files listed per second, until the listing finished
+     */
+    double getScanRate() {
+        return perSecond(scanned.sum(), scanEnd != null ? scanEnd : clock.getAsLong());
+    }
+
+    double getReadRate() {
+        return perSecond(read.sum(), clock.getAsLong());
+    }
+
+    double getReadBytesRate() {
+        return perSecond(bytesRead.sum(), clock.getAsLong());
+    }
+
+    double getWriteRate() {
+        return perSecond(written.sum(), clock.getAsLong());
+    }
+
+    private double perSecond(long count, long end) {
+        double seconds = (double) (end - start) / TimeUnit.SECONDS.toNanos(1);
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "scanned %d files (%.1f/s), read %d files (%.1f/s, %.2f MB/s), wrote %d documents (%.1f/s)",
+            getScanned(), getScanRate(), getRead(), getReadRate(), getReadBytesRate() / (1024 * 1024),
+            getWritten(), getWriteRate());
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams the records of an input file that holds more than one document:
+ * the entries of a zip file, the rows of delimited text or the lines of
+ * json, or a mix such as gzipped delimited text. Nothing is unpacked to
+ * disk, and only one record is held in memory at a time.
+ */
+class InputRecordReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Receives the records of a file, on the thread that reads it.
+     */
+    interface RecordHandler {
+        /**
+         * @param uri - the uri of the document
+         * @param content - the document
+         * @param documentType - xml, json, text or binary
+         */
+        void record(String uri, byte[] content, String documentType);
+    }
+
+    private final InputFlowOptions options;
+    private final Consumer<String> errorHandler;
+
+    /**
+     * @param options - the input options
+     * @param errorHandler - receives the records that could not be read, one message each
+     */
+    InputRecordReader(InputFlowOptions options, Consumer<String> errorHandler) {
+        this.options = options;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @param file - the file to read
+     * @param handler - receives each record
+     * @return the number of records passed to the handler
+     * @throws IOException if the file cannot be read
+     */
+    long read(Path file, RecordHandler handler) throws IOException {
+        String name = file.getFileName().toString();
+        String codec = options.compressionCodec(file);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            if (InputFlowOptions.ZIP.equals(codec)) {
+                long count = 0;
+                ZipInputStream zip = new ZipInputStream(in);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory()) {
+                        count += split(entry.getName(), entry.getName(), zip, handler);
+                    }
+                }
+                return count;
+            }
+            else if (InputFlowOptions.GZIP.equals(codec)) {
+                String uri = file.toAbsolutePath().toUri().getPath().replaceFirst("(?i)\\.gz(ip)?$", "");
+                return split(name.replaceFirst("(?i)\\.gz(ip)?$", ""), uri, new GZIPInputStream(in, BUFFER_SIZE), handler);
+            }
+            return split(name, file.toAbsolutePath().toUri().getPath(), in, handler);
+        }
+    }
+
+    /**
+     * Passes the records of one stream to the handler. The stream is not closed.
+     *
+     * @param name - the name of the file or zip entry
+     * @param uri - the uri of the file or zip entry, used when it is loaded whole
+     */
+    private long split(String name, String uri, InputStream in, RecordHandler handler) throws IOException {
+        switch (options.getInputFileType()) {
+            case InputFlowOptions.DELIMITED_TEXT:
+                return splitDelimitedText(name, in, handler);
+            case InputFlowOptions.DELIMITED_JSON:
+                return splitJsonLines(name, in, handler);
+            default:
+                handler.record(options.toUri(uri), readAll(in), options.documentType(name));
+                return 1;
+        }
+    }
+
+    private long splitDelimitedText(String name, InputStream in, RecordHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        DelimitedTextReader rows = new DelimitedTextReader(reader, options.getDelimiter());
+        List<String> header = rows.readRow();
+        if (header == null) {
+            return 0;
+        }
+        int uriField = options.getUriId() != null ? header.indexOf(options.getUriId()) : 0;
+        if (uriField < 0) {
+            throw new IOException(name + " has no field named " + options.getUriId());
+        }
+
+        String documentType = options.documentType(name);
+        long count = 0;
+        List<String> row;
+        while ((row = rows.readRow()) != null) {
+            if (row.size() != header.size()) {
+                errorHandler.accept("line " + rows.getLine() + " of " + name + " has " + row.size() +
+                    " fields, expected " + header.size());
+                continue;
+            }
+            byte[] content = documentType.equals("json") ? toJson(header, row) : toXml(header, row);
+            handler.record(options.toUri(row.get(uriField)), content, documentType);
+            count++;
+        }
+        return count;
+    }
+
+    private long splitJsonLines(String name, InputStream in, RecordHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long count = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String uri = name + "-" + lineNumber;
+            JsonNode node;
+            try {
+                node = parseJsonLine(line, options.getUriId() != null);
+            }
+            catch (IOException e) {
+                errorHandler.accept("line " + lineNumber + " of " + name + " is not json: " + e.getMessage());
+                continue;
+            }
+            if (options.getUriId() != null) {
+                JsonNode id = node.get(options.getUriId());
+                if (id == null || !id.isValueNode()) {
+                    errorHandler.accept("line " + lineNumber + " of " + name + " has no " + options.getUriId());
+                    continue;
+                }
+                uri = id.asText();
+            }
+            handler.record(options.toUri(uri), line.getBytes(StandardCharsets.UTF_8), "json");
+            count++;
+        }
+        return count;
+    }
+
+    /*
+     * Every line is parsed, because one document the server can not parse fails the
+     * whole batch it is written in. The tree is only built when the uri is read from it.
+     */
+    private static JsonNode parseJsonLine(String line, boolean readTree) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(line)) {
+            if (parser.nextToken() == null) {
+                throw new IOException("no json value");
+            }
+            JsonNode node = null;
+            if (readTree) {
+                node = mapper.readTree(parser);
+            }
+            else {
+                parser.skipChildren();
+            }
+            if (parser.nextToken() != null) {
+                throw new IOException("more than one json value");
+            }
+            return node;
+        }
+    }
+
+    private static byte[] toJson(List<String> header, List<String> row) throws IOException {
+        ObjectNode node = mapper.createObjectNode();
+        for (int i = 0; i < header.size(); i++) {
+            node.put(header.get(i), row.get(i));
+        }
+        return mapper.writeValueAsBytes(node);
+    }
+
+    private byte[] toXml(List<String> header, List<String> row) {
+        StringBuilder xml = new StringBuilder();
+        String root = toXmlName(options.getDelimitedRootName());
+        xml.append('<').append(root).append('>');
+        for (int i = 0; i < header.size(); i++) {
+            String element = toXmlName(header.get(i));
+            xml.append('<').append(element).append('>');
+            escapeXml(row.get(i), xml);
+            xml.append("</").append(element).append('>');
+        }
+        xml.append("</").append(root).append('>');
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the name with characters that cannot be in an xml name replaced by _
+     */
+    static String toXmlName(String name) {
+        StringBuilder xmlName = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = Character.isLetter(c) || c == '_' || (i > 0 && (Character.isDigit(c) || c == '-' || c == '.'));
+            if (i == 0 && !valid && (Character.isDigit(c) || c == '-' || c == '.')) {
+                xmlName.append('_').append(c);
+            }
+            else {
+                xmlName.append(valid ? c : '_');
+            }
+        }
+        return xmlName.length() > 0 ? xmlName.toString() : "_";
+    }
+
+    private static void escapeXml(String value, StringBuilder xml) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': xml.append("&amp;"); break;
+                case '<': xml.append("&lt;"); break;
+                case '>': xml.append("&gt;"); break;
+                default: xml.append(c);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.hub.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the most recent lines of a process's output. Once it is full each
+ * new line replaces the oldest one, so a long running process does not
+ * grow its output without bound.
+ */
+class LineRingBuffer {
+
+    private final String[] lines;
+    private long count = 0;
+
+    /**
+     * @param capacity - the most lines to keep
+     */
+    LineRingBuffer(int capacity) {
+        this.lines = new String[Math.max(1, capacity)];
+    }
+
+    synchronized void add(String line) {
+        lines[(int) (count % lines.length)] = line;
+        count++;
+    }
+
+    /**
+     * @return the lines kept, oldest first
+     */
+    synchronized List<String> getLines() {
+        int size = (int) Math.min(count, lines.length);
+        List<String> kept = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            kept.add(lines[(int) (i % lines.length)]);
+        }
+        return kept;
+    }
+
+    /**
+     * @return the number of lines that no longer fit
+     */
+    synchronized long getDroppedLines() {
+        return Math.max(0, count - lines.length);
+    }
+}
@@ -28,28 +28,64 @@ public class MlcpConsumer implements Consumer<String> {
 
     @Override
     public void accept(String status) {
-        Matcher m = COMPLETED_PATTERN.matcher(status);
-        if (m.matches()) {
-            int pc = Integer.parseInt(m.group(1));
-
-            // don't send 100% because more stuff happens after 100% is reported here
-            if (pc > currentPc && pc != 100) {
-                currentPc = pc;
-            }
+        int pc = parsePercent(status);
+        // don't send 100% because more stuff happens after 100% is reported here
+        if (pc > currentPc && pc != 100) {
+            currentPc = pc;
         }
 
-        m = SUCCESSFUL_EVENTS_PATTERN.matcher(status);
-        if (m.matches()) {
-            successfulEvents.addAndGet(Long.parseLong(m.group(1)));
+        long successful = parseCommitted(status);
+        if (successful >= 0) {
+            successfulEvents.addAndGet(successful);
         }
 
-        m = FAILED_EVENTS_PATTERN.matcher(status);
-        if (m.matches()) {
-            failedEvents.addAndGet(Long.parseLong(m.group(1)));
+        long failed = parseFailed(status);
+        if (failed >= 0) {
+            failedEvents.addAndGet(failed);
         }
 
         if (statusListener != null) {
             statusListener.onStatusChange(jobId, currentPc, status);
         }
     }
+
+    /**
+     * @return the percent complete in a line of mlcp output, or -1 if it has none
+     */
+    private static int parsePercent(String line) {
+        // most lines are none of these, and contains is much cheaper than a regex
+        if (line.contains("completed ")) {
+            Matcher m = COMPLETED_PATTERN.matcher(line);
+            if (m.matches()) {
+                return Integer.parseInt(m.group(1));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the records committed in a line of mlcp output, or -1 if it has none
+     */
+    private static long parseCommitted(String line) {
+        if (line.contains("OUTPUT_RECORDS_COMMITTED")) {
+            Matcher m = SUCCESSFUL_EVENTS_PATTERN.matcher(line);
+            if (m.matches()) {
+                return Long.parseLong(m.group(1));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the records that failed in a line of mlcp output, or -1 if it has none
+     */
+    private static long parseFailed(String line) {
+        if (line.contains("OUTPUT_RECORDS_FAILED")) {
+            Matcher m = FAILED_EVENTS_PATTERN.matcher(line);
+            if (m.matches()) {
+                return Long.parseLong(m.group(1));
+            }
+        }
+        return -1;
+    }
 }
@@ -19,17 +19,18 @@ import com.marklogic.hub.HubConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
 public class ProcessRunner extends Thread {
 
+    public static final int DEFAULT_MAX_OUTPUT_LINES = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private HubConfig hubConfig;
-    private ArrayList<String> processOutput = new ArrayList<>();
+    private LineRingBuffer processOutput = new LineRingBuffer(DEFAULT_MAX_OUTPUT_LINES);
 
     private List<String> args;
     private Consumer<String> consumer;
@@ -38,8 +39,17 @@ public class ProcessRunner extends Thread {
         return hubConfig;
     }
 
+    /**
+     * @return the most recent lines of output, see {@link #withMaxOutputLines(int)}
+     */
     public String getProcessOutput() {
-        return String.join("\n", processOutput);
+        List<String> lines = new ArrayList<>();
+        long dropped = processOutput.getDroppedLines();
+        if (dropped > 0) {
+            lines.add("(" + dropped + " earlier lines of output were not kept)");
+        }
+        lines.addAll(processOutput.getLines());
+        return String.join("\n", lines);
     }
 
     public static ProcessRunner newRunner() {
@@ -60,6 +70,16 @@ public class ProcessRunner extends Thread {
         return this;
     }
 
+    /**
+     * @param maxOutputLines - the most lines of output to keep for {@link #getProcessOutput()}.
+     *                       Older lines are dropped once there are more.
+     * @return the runner
+     */
+    public ProcessRunner withMaxOutputLines(int maxOutputLines) {
+        this.processOutput = new LineRingBuffer(maxOutputLines);
+        return this;
+    }
+
     public ProcessRunner withStreamConsumer(Consumer<String> consumer) {
         this.consumer = consumer;
         return this;
@@ -74,9 +94,7 @@ public class ProcessRunner extends Thread {
             Process process = pb.start();
 
             StreamGobbler gobbler = new StreamGobbler(process.getInputStream(), status -> {
-                synchronized (processOutput) {
-                    processOutput.add(status);
-                }
+                processOutput.add(status);
                 consumer.accept(status);
             });
             gobbler.start();
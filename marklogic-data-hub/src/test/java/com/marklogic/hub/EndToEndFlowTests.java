@@ -13,6 +13,7 @@ import com.marklogic.client.io.*;
 import com.marklogic.hub.flow.*;
 import com.marklogic.hub.scaffold.Scaffolding;
 import com.marklogic.hub.util.FileUtil;
+import com.marklogic.hub.util.InputFlowRunner;
 import com.marklogic.hub.util.MlcpRunner;
 import com.marklogic.hub.validate.EntitiesValidator;
 import org.apache.commons.io.FileUtils;
@@ -202,6 +203,16 @@ public class EndToEndFlowTests extends HubTestBase {
                     FinalCounts finalCounts = new FinalCounts(0, 1, 1, 1, 0, 0, 1, 0, 0, 0, "FINISHED");
                     testInputFlowViaMlcp(prefix, useEs ? "-es" : "", finalClient, codeFormat, dataFormat, useEs, options, finalCounts);
                 }));
+                tests.add(DynamicTest.dynamicTest(flowName + " in process", () -> {
+                    Map<String, Object> options = new HashMap<>();
+                    FinalCounts finalCounts = new FinalCounts(1, 0, 1, 1, 0, 0, 1, 0, 1, 0, "FINISHED");
+                    testInputFlowInProcess(prefix, useEs ? "-es" : "", stagingClient, codeFormat, dataFormat, useEs, options, finalCounts);
+                }));
+                tests.add(DynamicTest.dynamicTest(flowName + " in process", () -> {
+                    Map<String, Object> options = new HashMap<>();
+                    FinalCounts finalCounts = new FinalCounts(0, 1, 1, 1, 0, 0, 1, 0, 1, 0, "FINISHED");
+                    testInputFlowInProcess(prefix, useEs ? "-es" : "", finalClient, codeFormat, dataFormat, useEs, options, finalCounts);
+                }));
                 tests.add(DynamicTest.dynamicTest(flowName + " REST", () -> {
                     Map<String, Object> options = new HashMap<>();
                     FinalCounts finalCounts = new FinalCounts(1, 0, 1, 0, 0, 0, 0, 0, 0, 0, "FINISHED");
@@ -339,6 +350,11 @@ public class EndToEndFlowTests extends HubTestBase {
                     FinalCounts finalCounts = new FinalCounts(1, 0, 1, 1, 0, 0, 1, 0, 0, 0, "FINISHED");
                     testInputFlowViaMlcp(prefix, useEs ? "-es" : "", stagingClient, codeFormat, dataFormat, useEs, options, finalCounts);
                 }));
+                tests.add(DynamicTest.dynamicTest(flowName + " in process", () -> {
+                    Map<String, Object> options = new HashMap<>();
+                    FinalCounts finalCounts = new FinalCounts(1, 0, 1, 1, 0, 0, 1, 0, 1, 0, "FINISHED");
+                    testInputFlowInProcess(prefix, useEs ? "-es" : "", stagingClient, codeFormat, dataFormat, useEs, options, finalCounts);
+                }));
                 tests.add(DynamicTest.dynamicTest(flowName + " REST", () -> {
                     Map<String, Object> options = new HashMap<>();
                     FinalCounts finalCounts = new FinalCounts(1, 0, 1, 0, 0, 0, 0, 0, 0, 0, "FINISHED");
@@ -799,6 +815,15 @@ public class EndToEndFlowTests extends HubTestBase {
     }
 
     private void testInputFlowViaMlcp(String prefix, String fileSuffix, DatabaseClient databaseClient, CodeFormat codeFormat, DataFormat dataFormat, boolean useEs, Map<String, Object> options, FinalCounts finalCounts) {
+        testInputFlow(prefix, fileSuffix, databaseClient, codeFormat, dataFormat, useEs, options, finalCounts, false);
+    }
+
+    // loads the same files with the same mlcp options as testInputFlowViaMlcp, without starting mlcp
+    private void testInputFlowInProcess(String prefix, String fileSuffix, DatabaseClient databaseClient, CodeFormat codeFormat, DataFormat dataFormat, boolean useEs, Map<String, Object> options, FinalCounts finalCounts) {
+        testInputFlow(prefix, fileSuffix, databaseClient, codeFormat, dataFormat, useEs, options, finalCounts, true);
+    }
+
+    private void testInputFlow(String prefix, String fileSuffix, DatabaseClient databaseClient, CodeFormat codeFormat, DataFormat dataFormat, boolean useEs, Map<String, Object> options, FinalCounts finalCounts, boolean inProcess) {
         clearDatabases(HubConfig.DEFAULT_STAGING_NAME, HubConfig.DEFAULT_FINAL_NAME, HubConfig.DEFAULT_TRACE_NAME, HubConfig.DEFAULT_JOB_NAME);
 
         String flowName = getFlowName(prefix, codeFormat, dataFormat, FlowType.INPUT, useEs);
@@ -831,14 +856,28 @@ public class EndToEndFlowTests extends HubTestBase {
             throw new RuntimeException(e);
         }
 
-    MlcpRunner mlcpRunner = new MlcpRunner(null, "com.marklogic.hub.util.MlcpMain", getHubConfig(), flow, databaseClient, mlcpOptions, null);
-        mlcpRunner.start();
-        try {
-            mlcpRunner.join();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        String jobId;
+        if (inProcess) {
+            InputFlowRunner inputFlowRunner = new InputFlowRunner(getHubConfig(), flow, databaseClient, mlcpOptions, null);
+            inputFlowRunner.start();
+            try {
+                inputFlowRunner.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            jobId = inputFlowRunner.getJobId();
+        }
+        else {
+            MlcpRunner mlcpRunner = new MlcpRunner(null, "com.marklogic.hub.util.MlcpMain", getHubConfig(), flow, databaseClient, mlcpOptions, null);
+            mlcpRunner.start();
+            try {
+                mlcpRunner.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            logger.error(mlcpRunner.getProcessOutput());
+            jobId = mlcpRunner.getJobId();
         }
-        logger.error(mlcpRunner.getProcessOutput());
 
         int stagingCount = getStagingDocCount();
         int finalCount = getFinalDocCount();
@@ -894,8 +933,8 @@ public class EndToEndFlowTests extends HubTestBase {
         }
 
         // inspect the job json
-        JsonNode node = jobDocMgr.read("/jobs/" + mlcpRunner.getJobId() + ".json").next().getContent(new JacksonHandle()).get();
-        assertEquals(mlcpRunner.getJobId(), node.get("jobId").asText());
+        JsonNode node = jobDocMgr.read("/jobs/" + jobId + ".json").next().getContent(new JacksonHandle()).get();
+        assertEquals(jobId, node.get("jobId").asText());
         assertEquals(finalCounts.jobSuccessfulEvents, node.get("successfulEvents").asInt());
         assertEquals(finalCounts.jobFailedEvents, node.get("failedEvents").asInt());
         assertEquals(finalCounts.jobSuccessfulBatches, node.get("successfulBatches").asInt());
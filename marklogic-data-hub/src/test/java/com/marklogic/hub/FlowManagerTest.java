@@ -18,6 +18,7 @@ package com.marklogic.hub;
 import com.marklogic.client.io.DOMHandle;
 import com.marklogic.client.io.DocumentMetadataHandle;
 import com.marklogic.hub.collector.Collector;
+import com.marklogic.hub.deploy.commands.LoadUserModulesCommand;
 import com.marklogic.hub.flow.*;
 import com.marklogic.hub.main.MainPlugin;
 import com.marklogic.hub.scaffold.Scaffolding;
@@ -35,6 +36,8 @@ import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -138,6 +141,7 @@ public class FlowManagerTest extends HubTestBase {
         assertEquals(flow.getName(), "my-test-flow");
         assertEquals(flow.getCollector().getCodeFormat(), CodeFormat.XQUERY);
         assertEquals(flow.getCollector().getModule(), "/entities/test/harmonize/my-test-flow/collector.xqy");
+        assertTrue(flow.getCollector().isForestAware());
         assertEquals(flow.getMain().getCodeFormat(), CodeFormat.XQUERY);
         assertEquals(flow.getMain().getModule(), "/entities/test/harmonize/my-test-flow/main.xqy");
     }
@@ -208,6 +212,9 @@ public class FlowManagerTest extends HubTestBase {
             assertEquals(codeFormat, flow.getCodeFormat());
             assertEquals(dataFormat, flow.getDataFormat());
             assertEquals(flowType, flow.getType());
+            if (flowType.equals(FlowType.HARMONIZE)) {
+                assertTrue(flow.getCollector().isForestAware());
+            }
         });
 
         FileUtils.deleteDirectory(Paths.get("./del-me-dir").toFile());
@@ -237,6 +244,7 @@ public class FlowManagerTest extends HubTestBase {
         Collector c = flow1.getCollector();
         assertEquals(CodeFormat.XQUERY, c.getCodeFormat());
         assertEquals("/entities/test/harmonize/my-test-flow1/collector.xqy", c.getModule());
+        assertFalse(c.isForestAware());
 
         MainPlugin main = flow1.getMain();
         assertEquals(CodeFormat.XQUERY, main.getCodeFormat());
@@ -300,6 +308,64 @@ public class FlowManagerTest extends HubTestBase {
         assertXMLEqual(getXmlFromResource("flow-manager-test/harmonized/harmonized2.xml"), finalDocMgr.read("/employee2.xml").next().getContent(new DOMHandle()).get());
     }
 
+    @Test
+    public void testRunFlowWithBatchedWrites_writerFailsAfterInsert() {
+        addStagingDocs();
+        installModules();
+        installModule("/entities/test/harmonize/my-test-flow1/writer.xqy", "flow-manager-test/my-test-flow1/writer-inserts-then-fails.xqy");
+        try {
+            assertEquals(0, getFinalDocCount());
+
+            List<String> failed = new ArrayList<>();
+            FlowManager fm = new FlowManager(getHubConfig());
+            Flow flow1 = fm.getFlow("test", "my-test-flow1");
+            FlowRunner flowRunner = fm.newFlowRunner()
+                .withFlow(flow1)
+                .withBatchSize(10)
+                .withThreadCount(1)
+                .withBatchedWrites(true)
+                .onItemFailed((jobId, itemId) -> failed.add(itemId));
+            flowRunner.run();
+            flowRunner.awaitCompletion();
+
+            // the failed writer's side document is rolled back with the rest of its writes
+            assertEquals(Collections.singletonList("/employee2.xml"), failed);
+            assertEquals(2, getFinalDocCount());
+            assertNotNull(finalDocMgr.exists("/employee1.xml"));
+            assertNotNull(finalDocMgr.exists("/partial/employee1.xml"));
+            assertNull(finalDocMgr.exists("/employee2.xml"));
+            assertNull(finalDocMgr.exists("/partial/employee2.xml"));
+        }
+        finally {
+            // put the real writer back for the other tests
+            installModules();
+        }
+    }
+
+    @Test
+    public void testFlowCache_keptAcrossWritesToOtherDatabases() {
+        installModules();
+        String cachedAt = getFlowCacheExpiry();
+
+        // commits to other databases move the cluster timestamp but must not drop the cached flow
+        installFinalDoc("/flow-cache-test.xml", new DocumentMetadataHandle(), "flow-manager-test/input/employee1.xml");
+        assertEquals(cachedAt, getFlowCacheExpiry());
+        finalDocMgr.delete("/flow-cache-test.xml");
+
+        // loading modules does
+        LoadUserModulesCommand.updateFlowCacheVersion(stagingModulesClient, null);
+        assertNotEquals(cachedAt, getFlowCacheExpiry());
+    }
+
+    private String getFlowCacheExpiry() {
+        return runInDatabase(
+            "import module namespace flow = \"http://marklogic.com/data-hub/flow-lib\"\n" +
+            "  at \"/com.marklogic.hub/lib/flow-lib.xqy\";\n" +
+            "let $_ := flow:get-flow(\"test\", \"my-test-flow1\", \"harmonize\")\n" +
+            "return fn:string(map:get(xdmp:get-server-field(\"flow-cache:flow:test:my-test-flow1:harmonize\"), \"expires\"))",
+            HubConfig.DEFAULT_STAGING_NAME).next().getString();
+    }
+
     @Test
     public void testRunFlowWithBackwards() throws SAXException, IOException, ParserConfigurationException, XMLStreamException {
         addFinalDocs();
@@ -435,6 +435,7 @@ public class HubTestBase {
             writeSet.add(path, handle);
         });
         modMgr.write(writeSet);
+        LoadUserModulesCommand.updateFlowCacheVersion(stagingModulesClient, null);
     }
 
     protected static void installModule(String path, String localPath) {
@@ -453,6 +454,7 @@ public class HubTestBase {
         }
 
         modMgr.write(path, handle);
+        LoadUserModulesCommand.updateFlowCacheVersion(stagingModulesClient, null);
     }
 
     protected static EvalResultIterator runInModules(String query) {
@@ -0,0 +1,161 @@
+package com.marklogic.hub.collector;
+
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentDiskQueueTest {
+
+    @Test(expected = InvalidParameterException.class)
+    public void testConcurrentDiskQueue_noStripes() {
+        new ConcurrentDiskQueue(10, 0, null);
+        fail();
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void testConcurrentDiskQueue_sizeTooSmall() {
+        new ConcurrentDiskQueue(2, 4, null);
+        fail();
+    }
+
+    @Test
+    public void testSingleThread() {
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(2, 2, null);
+        assertTrue(instance.isEmpty());
+        assertNull(instance.poll());
+        instance.add("one");
+        instance.add("two");
+        instance.add("three");
+        assertEquals(3, instance.size());
+        assertEquals("one", instance.peek());
+        assertEquals("one", instance.poll());
+        assertEquals("two", instance.poll());
+        assertEquals("three", instance.poll());
+        assertTrue(instance.isEmpty());
+        instance.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOffer_afterFinish() {
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(2, 1, null);
+        instance.finish();
+        instance.add("too late");
+    }
+
+    @Test
+    public void testPoll_returnsWhenFinished() throws InterruptedException {
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(2, 1, null);
+        Thread finisher = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            instance.finish();
+        });
+        finisher.start();
+        assertNull(instance.poll(1, TimeUnit.MINUTES));
+        finisher.join();
+    }
+
+    @Test
+    public void testManyProducersManyConsumers() throws InterruptedException {
+        int producerCount = 4;
+        int consumerCount = 6;
+        int perProducer = 50000;
+
+        // a small in-memory size forces most elements through the backing stores
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(64, 4, null);
+        Set<String> consumed = ConcurrentHashMap.newKeySet();
+        List<String> duplicates = new ArrayList<>();
+
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < consumerCount; c++) {
+            Thread consumer = new Thread(() -> {
+                Iterator<String> iterator = instance.iterator();
+                while (iterator.hasNext()) {
+                    String uri = iterator.next();
+                    if (!consumed.add(uri)) {
+                        synchronized (duplicates) {
+                            duplicates.add(uri);
+                        }
+                    }
+                }
+            });
+            consumer.start();
+            consumers.add(consumer);
+        }
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    instance.add(producer + "-" + i);
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        instance.finish();
+        for (Thread consumer : consumers) {
+            consumer.join(TimeUnit.MINUTES.toMillis(1));
+            assertFalse(consumer.isAlive());
+        }
+
+        assertTrue(duplicates.isEmpty());
+        assertEquals(producerCount * perProducer, consumed.size());
+        assertTrue(instance.isEmpty());
+    }
+
+    @Test
+    public void testSingleProducer_usesWholeInMemorySize() {
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(5000, 64, null);
+        instance.add("one");
+        assertEquals(5000, instance.getInMemoryCapacity());
+        instance.close();
+    }
+
+    @Test
+    public void testInMemorySize_sharedAcrossProducers() throws InterruptedException {
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(5000, 64, null);
+        instance.add("one");
+        Thread producer = new Thread(() -> instance.add("two"));
+        producer.start();
+        producer.join();
+        assertEquals(5000, instance.getInMemoryCapacity());
+        assertEquals("one", instance.poll());
+        assertEquals("two", instance.poll());
+        instance.close();
+    }
+
+    @Test
+    public void testOrderPerProducer() {
+        ConcurrentDiskQueue instance = new ConcurrentDiskQueue(4, 4, null);
+        for (int i = 0; i < 1000; i++) {
+            instance.add(Integer.toString(i));
+        }
+        instance.finish();
+
+        // a single producer thread uses a single stripe, so its order is kept
+        Set<String> seen = new HashSet<>();
+        int expected = 0;
+        for (String uri : instance) {
+            assertEquals(Integer.toString(expected++), uri);
+            seen.add(uri);
+        }
+        assertEquals(1000, seen.size());
+    }
+}
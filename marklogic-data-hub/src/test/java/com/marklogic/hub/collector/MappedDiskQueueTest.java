@@ -0,0 +1,141 @@
+package com.marklogic.hub.collector;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+public class MappedDiskQueueTest {
+
+    @Test(expected = InvalidParameterException.class)
+    public void testMappedDiskQueue_sizeTooSmall() {
+        new MappedDiskQueue(0);
+        fail();
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void testMappedDiskQueue_tempDirNotDir() throws IOException {
+        File tmpFile = File.createTempFile("tmp", "txt");
+        tmpFile.deleteOnExit();
+        new MappedDiskQueue(1, tmpFile);
+        fail();
+    }
+
+    @Test
+    public void testLoadFromFile() {
+        Queue<String> instance = new MappedDiskQueue(1);
+        assertEquals(0, instance.size());
+        instance.add("one");
+        instance.add("two");
+        instance.add("three");
+        assertEquals(3, instance.size());
+        assertEquals("one", instance.peek());
+        assertEquals("one", instance.remove());
+        assertEquals("two", instance.remove());
+        assertEquals("three", instance.remove());
+        assertEquals(0, instance.size());
+        assertNull(instance.poll());
+    }
+
+    @Test
+    public void testResizeKeepsOrder() {
+        MappedDiskQueue instance = new MappedDiskQueue(4);
+        for (int i = 0; i < 6; i++) {
+            instance.add("uri-" + i);
+        }
+        instance.poll();
+        instance.setMaxInMemorySize(2);
+        instance.add("uri-6");
+        instance.setMaxInMemorySize(8);
+        instance.add("uri-7");
+        assertEquals(7, instance.size());
+        for (int i = 1; i < 8; i++) {
+            assertEquals("uri-" + i, instance.poll());
+        }
+        assertNull(instance.poll());
+        instance.close();
+    }
+
+    @Test
+    public void testInterleavedOfferAndPoll() {
+        Queue<String> instance = new MappedDiskQueue(7);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < 13; i++) {
+                instance.add("uri-" + next++);
+            }
+            for (int i = 0; i < 11; i++) {
+                assertEquals("uri-" + expected++, instance.poll());
+            }
+        }
+        assertEquals(next - expected, instance.size());
+        while (!instance.isEmpty()) {
+            assertEquals("uri-" + expected++, instance.poll());
+        }
+        assertEquals(next, expected);
+    }
+
+    @Test
+    public void testMultiByteCharacters() {
+        Queue<String> instance = new MappedDiskQueue(1);
+        instance.add("/first.json");
+        instance.add("/donn\u00e9es/\u6587\u6863.xml");
+        instance.add("");
+        assertEquals("/first.json", instance.poll());
+        assertEquals("/donn\u00e9es/\u6587\u6863.xml", instance.poll());
+        assertEquals("", instance.poll());
+    }
+
+    @Test
+    public void testIterator() {
+        Queue<String> instance = new MappedDiskQueue(2);
+        assertFalse(instance.iterator().hasNext());
+
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            instance.add(Integer.toString(i));
+        }
+
+        Iterator<String> iterator = instance.iterator();
+        for (int i = 0; i < count; i++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(Integer.toString(i), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+
+        // iterating does not consume the queue
+        assertEquals(count, instance.size());
+        assertEquals("0", instance.poll());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testIterator_exhausted() {
+        new MappedDiskQueue(1).iterator().next();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testOffer_null() {
+        new MappedDiskQueue(1).offer(null);
+    }
+
+    @Test
+    public void testClear() {
+        MappedDiskQueue instance = new MappedDiskQueue(1);
+        instance.add("one");
+        instance.add("two");
+        instance.clear();
+        assertEquals(0, instance.size());
+        instance.add("three");
+        instance.add("four");
+        assertEquals("three", instance.poll());
+        assertEquals("four", instance.poll());
+        instance.close();
+    }
+}
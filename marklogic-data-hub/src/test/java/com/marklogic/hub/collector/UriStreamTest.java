@@ -0,0 +1,68 @@
+package com.marklogic.hub.collector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class UriStreamTest {
+
+    @Test
+    public void testEmptyStream() {
+        UriStream stream = new UriStream(1);
+        stream.finish();
+        assertFalse(stream.hasNext());
+        assertEquals(0, stream.getCount());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextWhenFinished() {
+        UriStream stream = new UriStream(1);
+        stream.finish();
+        stream.next();
+    }
+
+    @Test
+    public void testConsumeWhileProducing() throws InterruptedException {
+        int count = 100000;
+        UriStream stream = new UriStream(10);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                stream.add(Integer.toString(i));
+            }
+            stream.finish();
+        });
+        producer.start();
+
+        List<String> results = new ArrayList<>();
+        while (stream.hasNext()) {
+            results.add(stream.next());
+        }
+        producer.join();
+
+        assertTrue(stream.isFinished());
+        assertNull(stream.getError());
+        assertEquals(count, stream.getCount());
+        assertEquals(count, results.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.toString(i), results.get(i));
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        UriStream stream = new UriStream(10);
+        stream.add("one");
+        RuntimeException error = new RuntimeException("collector failed");
+        stream.fail(error);
+
+        assertTrue(stream.isFinished());
+        assertSame(error, stream.getError());
+        assertTrue(stream.hasNext());
+        assertEquals("one", stream.next());
+        assertFalse(stream.hasNext());
+    }
+}
@@ -0,0 +1,69 @@
+package com.marklogic.hub.collector.impl;
+
+import com.marklogic.hub.metrics.HubMetrics;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class CollectorHttpClientsTest {
+
+    private static final String POOL = HubMetrics.COLLECTOR_POOL + ".user@http://localhost:8010.";
+
+    @After
+    public void teardown() {
+        CollectorHttpClients.closeAll();
+        HubMetrics.reset();
+    }
+
+    private long poolGauge(String stat) {
+        return (Long) HubMetrics.snapshot().get(POOL + stat).get("value");
+    }
+
+    @Test
+    public void testSameServerSharesClient() {
+        CloseableHttpClient first = CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 8, 60);
+        CloseableHttpClient second = CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 8, 60);
+        assertSame(first, second);
+        assertEquals(4, HubMetrics.snapshot().size());
+    }
+
+    @Test
+    public void testDifferentServerOrCredentials() {
+        CloseableHttpClient client = CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 8, 60);
+        assertNotSame(client, CollectorHttpClients.get("otherhost", 8010, "user", "pass", null, null, 8, 60));
+        assertNotSame(client, CollectorHttpClients.get("localhost", 8011, "user", "pass", null, null, 8, 60));
+        assertNotSame(client, CollectorHttpClients.get("localhost", 8010, "other", "pass", null, null, 8, 60));
+        assertNotSame(client, CollectorHttpClients.get("localhost", 8010, "user", "changed", null, null, 8, 60));
+    }
+
+    @Test
+    public void testPoolGauges() throws Exception {
+        CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 8, 60);
+        assertEquals(8, poolGauge("max"));
+        assertEquals(0, poolGauge("leased"));
+        assertEquals(0, poolGauge("available"));
+        assertEquals(0, poolGauge("pending"));
+
+        // the pool size of an existing client can be changed
+        CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 16, 60);
+        assertEquals(16, poolGauge("max"));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.marklogic.hub:type=Gauge,name=" + ObjectName.quote(POOL + "max"));
+        assertEquals(16L, server.getAttribute(name, "Value"));
+    }
+
+    @Test
+    public void testCloseAll() {
+        CloseableHttpClient client = CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 8, 60);
+        CollectorHttpClients.closeAll();
+        assertTrue(HubMetrics.snapshot().isEmpty());
+        assertNotSame(client, CollectorHttpClients.get("localhost", 8010, "user", "pass", null, null, 8, 60));
+    }
+}
@@ -0,0 +1,108 @@
+package com.marklogic.hub.collector.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.*;
+
+public class CollectorResponseReaderTest {
+
+    private static final String BODY = "/one.json\n/donn\u00e9es/\u6587\u6863.xml\n\n/three.json";
+
+    @Test
+    public void testPlain() throws IOException {
+        List<String> uris = new ArrayList<>();
+        long count = CollectorResponseReader.read(new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)), null, uris::add);
+        assertEquals(3, count);
+        assertEquals("/one.json", uris.get(0));
+        assertEquals("/donn\u00e9es/\u6587\u6863.xml", uris.get(1));
+        assertEquals("/three.json", uris.get(2));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<String> uris = new ArrayList<>();
+        long count = CollectorResponseReader.read(new ByteArrayInputStream(bytes.toByteArray()), "GZIP", uris::add);
+        assertEquals(3, count);
+        assertEquals("/donn\u00e9es/\u6587\u6863.xml", uris.get(1));
+    }
+
+    @Test
+    public void testGzipMembers() throws IOException {
+        // the server compresses each chunk of uris separately, and may put a newline between them
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int chunk = 0; chunk < 3; chunk++) {
+            StringBuilder uris = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                uris.append("/chunk-").append(chunk).append("/").append(i).append(".json\n");
+            }
+            try (GZIPOutputStream out = new GZIPOutputStream(new NonClosingOutputStream(bytes))) {
+                out.write(uris.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (chunk == 1) {
+                bytes.write('\n');
+            }
+        }
+
+        List<String> uris = new ArrayList<>();
+        long count = CollectorResponseReader.read(new ByteArrayInputStream(bytes.toByteArray()), "gzip", uris::add);
+        assertEquals(15000, count);
+        assertEquals("/chunk-0/0.json", uris.get(0));
+        assertEquals("/chunk-1/4999.json", uris.get(9999));
+        assertEquals("/chunk-2/4999.json", uris.get(14999));
+    }
+
+    @Test(expected = ZipException.class)
+    public void testGzipMembers_trailingGarbage() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(new NonClosingOutputStream(bytes))) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        bytes.write("not gzip".getBytes(StandardCharsets.UTF_8));
+        CollectorResponseReader.read(new ByteArrayInputStream(bytes.toByteArray()), "gzip", uri -> {});
+    }
+
+    @Test
+    public void testGzipEmpty() throws IOException {
+        List<String> uris = new ArrayList<>();
+        assertEquals(0, CollectorResponseReader.read(new ByteArrayInputStream(new byte[0]), "gzip", uris::add));
+        assertTrue(uris.isEmpty());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        List<String> uris = new ArrayList<>();
+        assertEquals(0, CollectorResponseReader.read(new ByteArrayInputStream(new byte[0]), null, uris::add));
+        assertTrue(uris.isEmpty());
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
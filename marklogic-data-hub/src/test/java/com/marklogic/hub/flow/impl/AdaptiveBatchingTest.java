@@ -0,0 +1,85 @@
+package com.marklogic.hub.flow.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchingTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private void call(AdaptiveBatching instance, long latencyMillis, long errors, boolean failed) throws InterruptedException {
+        instance.acquire();
+        long latency = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        // calls run side by side, so the clock moves by a share of each one
+        now.addAndGet(latency / instance.getConcurrency());
+        instance.release(instance.getBatchSize(), errors, latency, failed);
+    }
+
+    @Test
+    public void testBacksOffWhenCallsFail() throws InterruptedException {
+        AdaptiveBatching instance = new AdaptiveBatching(100, 4, 400, 16, now::get);
+        for (int i = 0; i < 4; i++) {
+            call(instance, 2000, 0, true);
+        }
+        assertEquals(50, instance.getBatchSize());
+        assertEquals(3, instance.getConcurrency());
+    }
+
+    @Test
+    public void testBacksOffWhenBatchesAreSlow() throws InterruptedException {
+        AdaptiveBatching instance = new AdaptiveBatching(100, 4, 400, 16, now::get);
+        for (int i = 0; i < 4; i++) {
+            call(instance, TimeUnit.NANOSECONDS.toMillis(AdaptiveBatching.MAX_BATCH_LATENCY) + 1000, 0, false);
+        }
+        assertEquals(50, instance.getBatchSize());
+        assertEquals(3, instance.getConcurrency());
+    }
+
+    @Test
+    public void testGrowsBatchSizeWhileItHelps() throws InterruptedException {
+        AdaptiveBatching instance = new AdaptiveBatching(100, 4, 400, 4, now::get);
+        // a fixed cost per call makes bigger batches faster per document
+        for (int i = 0; i < 1000; i++) {
+            call(instance, 500 + instance.getBatchSize(), 0, false);
+        }
+        assertEquals(400, instance.getBatchSize());
+        assertEquals(4, instance.getConcurrency());
+    }
+
+    @Test
+    public void testFindsTheBestConcurrency() throws InterruptedException {
+        AdaptiveBatching instance = new AdaptiveBatching(100, 2, 100, 16, now::get);
+        // calls slow down sharply once more than 6 run at once
+        for (int i = 0; i < 2000; i++) {
+            int concurrency = instance.getConcurrency();
+            call(instance, concurrency <= 6 ? 1000 : 1000 * (concurrency - 5) * (concurrency - 5), 0, false);
+        }
+        assertTrue(instance.getConcurrency() >= 5);
+        assertTrue(instance.getConcurrency() <= 7);
+    }
+
+    @Test
+    public void testLimitsCallsInFlight() throws InterruptedException {
+        AdaptiveBatching instance = new AdaptiveBatching(10, 1, 10, 1, now::get);
+        instance.acquire();
+        Thread waiter = new Thread(() -> {
+            try {
+                instance.acquire();
+            }
+            catch (InterruptedException e) {
+                // ends the thread
+            }
+        });
+        waiter.start();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        instance.release(10, 0, 1, false);
+        waiter.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(waiter.isAlive());
+    }
+}
@@ -0,0 +1,62 @@
+package com.marklogic.hub.flow.impl;
+
+import com.marklogic.hub.job.JobCheckpoint;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchWatermarkTest {
+
+    private static String[] batch(int first, int count) {
+        String[] items = new String[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = "/uri-" + (first + i);
+        }
+        return items;
+    }
+
+    @Test
+    public void testOutOfOrder() {
+        BatchWatermark instance = new BatchWatermark(null);
+        instance.finished(2, batch(10, 10), 0);
+        instance.finished(3, batch(20, 10), 10);
+        assertEquals(0, instance.getWatermark());
+        assertEquals(0, instance.checkpoint().getUriOffset());
+
+        instance.finished(1, batch(0, 10), 2);
+        JobCheckpoint checkpoint = instance.checkpoint();
+        assertEquals(3, checkpoint.getBatchWatermark());
+        assertEquals(30, checkpoint.getUriOffset());
+        assertEquals("/uri-29", checkpoint.getLastUri());
+        assertEquals(18, checkpoint.getSuccessfulEvents());
+        assertEquals(12, checkpoint.getFailedEvents());
+        assertEquals(2, checkpoint.getSuccessfulBatches());
+        assertEquals(1, checkpoint.getFailedBatches());
+    }
+
+    @Test
+    public void testAbandonedBatchStopsWatermark() {
+        BatchWatermark instance = new BatchWatermark(null);
+        instance.finished(1, batch(0, 10), 0);
+        instance.abandoned(2);
+        instance.finished(3, batch(20, 10), 0);
+        assertEquals(1, instance.getWatermark());
+        assertEquals("/uri-9", instance.checkpoint().getLastUri());
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() {
+        JobCheckpoint start = new JobCheckpoint(3, 30, "/uri-29").setCounts(28, 2, 3, 0);
+        BatchWatermark instance = new BatchWatermark(start);
+
+        // batch numbers start again at 1 after a resume
+        instance.finished(1, batch(30, 5), 1);
+        JobCheckpoint checkpoint = instance.checkpoint();
+        assertEquals(4, checkpoint.getBatchWatermark());
+        assertEquals(35, checkpoint.getUriOffset());
+        assertEquals("/uri-34", checkpoint.getLastUri());
+        assertEquals(32, checkpoint.getSuccessfulEvents());
+        assertEquals(3, checkpoint.getFailedEvents());
+        assertEquals(4, checkpoint.getSuccessfulBatches());
+    }
+}
@@ -0,0 +1,95 @@
+package com.marklogic.hub.flow.impl;
+
+import com.marklogic.hub.job.JobMetrics;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class JobMetricsRecorderTest {
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] sorted = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        assertEquals(5, JobMetricsRecorder.percentile(sorted, 50));
+        assertEquals(10, JobMetricsRecorder.percentile(sorted, 95));
+        assertEquals(1, JobMetricsRecorder.percentile(new long[] { 1 }, 99));
+        assertEquals(0, JobMetricsRecorder.percentile(new long[0], 50));
+    }
+
+    @Test
+    public void testSnapshot() {
+        AtomicLong clock = new AtomicLong(millis(1000));
+        JobMetricsRecorder instance = new JobMetricsRecorder(100, clock::get);
+
+        instance.collectorStarted();
+        clock.addAndGet(millis(500));
+        instance.collectorFinished();
+        instance.batchesStarted();
+        for (int i = 1; i <= 100; i++) {
+            instance.batchFinished(i % 2 == 0 ? "host-a" : "host-b", 10, millis(i % 2 == 0 ? i : 10 * i));
+        }
+        clock.addAndGet(millis(2000));
+        // a later call does not move the end of the collector
+        instance.collectorFinished();
+
+        JobMetrics metrics = instance.snapshot(25);
+        assertEquals(500.0, metrics.getDocsPerSecond(), 0.001);
+        assertEquals(500, metrics.getCollectorDuration());
+        assertEquals(25, metrics.getQueueDepth());
+        assertEquals(50, metrics.getHosts().get("host-a").getBatches());
+        assertEquals(500, metrics.getHosts().get("host-b").getDocuments());
+        assertEquals(51, metrics.getHosts().get("host-a").getMeanLatency());
+        assertEquals(500, metrics.getHosts().get("host-b").getMeanLatency());
+        assertEquals(90, metrics.getBatchLatencyP50());
+        assertEquals(890, metrics.getBatchLatencyP95());
+        assertEquals(970, metrics.getBatchLatencyP99());
+    }
+
+    @Test
+    public void testLatencyWindowKeepsRecentBatches() {
+        AtomicLong clock = new AtomicLong(0);
+        JobMetricsRecorder instance = new JobMetricsRecorder(10, clock::get);
+        instance.batchesStarted();
+        for (int i = 0; i < 10; i++) {
+            instance.batchFinished("host", 1, millis(1000));
+        }
+        for (int i = 0; i < 10; i++) {
+            instance.batchFinished("host", 1, millis(5));
+        }
+
+        JobMetrics metrics = instance.snapshot(-3);
+        assertEquals(5, metrics.getBatchLatencyP99());
+        assertEquals(0, metrics.getQueueDepth());
+        // still running
+        assertEquals(0, metrics.getCollectorDuration());
+        assertEquals(0, metrics.getDocsPerSecond(), 0.001);
+    }
+
+    @Test
+    public void testPluginTimingsAddUp() {
+        JobMetricsRecorder instance = new JobMetricsRecorder(10, () -> 0);
+        Map<String, Double> timings = new HashMap<>();
+        timings.put("content", 1.25);
+        timings.put("main", 0.5);
+        instance.pluginTimings(timings);
+        instance.pluginTimings(timings);
+        instance.pluginTimings(null);
+        timings.put("writer", 10.0);
+        instance.pluginTimings(timings);
+
+        JobMetrics metrics = instance.snapshot(0);
+        assertEquals(3, metrics.getPluginTimings().size());
+        assertEquals(Long.valueOf(4), metrics.getPluginTimings().get("content"));
+        assertEquals(Long.valueOf(2), metrics.getPluginTimings().get("main"));
+        assertEquals(Long.valueOf(10), metrics.getPluginTimings().get("writer"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.marklogic.hub.flow.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.marklogic.hub.flow.FlowItemCompleteListener;
+import com.marklogic.hub.flow.FlowItemFailureListener;
+import com.marklogic.hub.flow.FlowStatusListener;
+import com.marklogic.hub.flow.RunFlowResponse;
+import com.marklogic.hub.job.JobCheckpoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class JobProgressTest {
+
+    private static RunFlowResponse response(int total, int errors, String... errorMessages) {
+        RunFlowResponse response = new RunFlowResponse();
+        response.totalCount = total;
+        response.errorCount = errors;
+        response.completedItems = new ArrayList<>();
+        response.failedItems = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            (i < total - errors ? response.completedItems : response.failedItems).add("/uri-" + i);
+        }
+        response.errors = new ArrayList<>();
+        for (String message : errorMessages) {
+            response.errors.add(new TextNode(message));
+        }
+        return response;
+    }
+
+    private static JobProgress progress(int maxErrorMessages, JobCheckpoint start,
+                                        List<FlowItemCompleteListener> complete,
+                                        List<FlowItemFailureListener> failure,
+                                        List<FlowStatusListener> status) {
+        return new JobProgress("job", start, maxErrorMessages, complete, failure, status);
+    }
+
+    @Test
+    public void testCounts() {
+        JobCheckpoint start = new JobCheckpoint(3, 30, "/uri-29").setCounts(28, 2, 3, 0);
+        JobProgress instance = progress(10, start, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        instance.batchFinished(response(10, 1), JsonNode::asText);
+        instance.batchFinished(response(10, 10), JsonNode::asText);
+        instance.batchFailed(10);
+        instance.awaitListeners();
+
+        assertEquals(37, instance.getSuccessfulEvents());
+        assertEquals(23, instance.getFailedEvents());
+        assertEquals(4, instance.getSuccessfulBatches());
+        assertEquals(2, instance.getFailedBatches());
+    }
+
+    @Test
+    public void testErrorRingKeepsLatest() {
+        JobProgress instance = progress(3, null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        assertTrue(instance.getErrorMessages().isEmpty());
+
+        instance.batchFinished(response(5, 5, "a", "b", "c", "d", "e"), JsonNode::asText);
+        assertEquals(Arrays.asList("c", "d", "e"), instance.getErrorMessages());
+
+        instance.error("f");
+        assertEquals(Arrays.asList("d", "e", "f"), instance.getErrorMessages());
+        instance.awaitListeners();
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        JobProgress instance = progress(10, null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> instance.batchFinished(response(10, 2, "error"), JsonNode::asText));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        instance.awaitListeners();
+
+        assertEquals(8000, instance.getSuccessfulEvents());
+        assertEquals(2000, instance.getFailedEvents());
+        assertEquals(1000, instance.getSuccessfulBatches());
+        assertEquals(10, instance.getErrorMessages().size());
+    }
+
+    @Test
+    public void testSlowListenersDoNotBlockBatches() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> completed = Collections.synchronizedList(new ArrayList<>());
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        FlowItemCompleteListener slow = (jobId, item) -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            completed.add(item);
+        };
+        JobProgress instance = progress(10, null,
+            Collections.singletonList(slow),
+            Collections.singletonList((jobId, item) -> failed.add(item)),
+            Collections.emptyList());
+
+        instance.batchFinished(response(3, 1), JsonNode::asText);
+        instance.batchFinished(response(2, 0), JsonNode::asText);
+        assertEquals(4, instance.getSuccessfulEvents());
+        assertTrue(completed.isEmpty());
+
+        release.countDown();
+        instance.awaitListeners();
+        assertEquals(Arrays.asList("/uri-0", "/uri-1", "/uri-0", "/uri-1"), completed);
+        assertEquals(Collections.singletonList("/uri-2"), failed);
+    }
+
+    @Test
+    public void testPercentOnlyMovesForward() {
+        List<Integer> percents = Collections.synchronizedList(new ArrayList<>());
+        List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        JobProgress instance = progress(10, null, Collections.emptyList(), Collections.emptyList(),
+            Collections.singletonList((jobId, percentComplete, message) -> {
+                percents.add(percentComplete);
+                messages.add(message);
+            }));
+
+        instance.status(0, "starting harmonization");
+        // the total is not known yet
+        instance.reportProgress(-1, 10);
+        for (int i = 0; i < 20; i++) {
+            instance.batchFinished(response(10, 0), JsonNode::asText);
+            instance.reportProgress(200, 10);
+            // reporting again without progress says nothing new
+            instance.reportProgress(200, 10);
+        }
+        instance.status(100, "");
+        instance.awaitListeners();
+
+        assertEquals("starting harmonization", messages.get(0));
+        assertEquals(22, percents.size());
+        for (int i = 1; i < percents.size(); i++) {
+            assertTrue(percents.get(i) > percents.get(i - 1) || percents.get(i) == 100);
+            assertEquals(0, percents.get(i) % 5);
+        }
+    }
+}
@@ -16,8 +16,11 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -179,4 +182,41 @@ public class JobManagerTest extends HubTestBase {
         assertEquals(0, actual.totalCount);
         assertEquals(0, actual.errorCount);
     }
+
+    @Test
+    public void deleteJobsInBatches() {
+        JobManager manager = new JobManager(jobClient, traceClient);
+        AtomicLong lastDeletedTraces = new AtomicLong();
+
+        JobDeleteResponse actual = manager.deleteJobs(Arrays.asList(jobIds.get(0), jobIds.get(2), "InvalidId"), 1, 2,
+            (deletedTraces, deletedJobs) -> lastDeletedTraces.accumulateAndGet(deletedTraces, Math::max));
+
+        assertEquals(1, getJobDocCount());
+        assertEquals(2, getTracingDocCount());
+        assertEquals(2, actual.totalCount);
+        assertEquals(1, actual.errorCount);
+        assertTrue(actual.deletedJobs.containsAll(Arrays.asList(jobIds.get(0), jobIds.get(2))));
+        assertEquals(Collections.singletonList("InvalidId"), actual.failedJobs);
+        assertEquals(4, actual.deletedTraceCount);
+        assertEquals(4, lastDeletedTraces.get());
+    }
+
+    @Test
+    public void deleteJobsOlderThan() {
+        JobManager manager = new JobManager(jobClient, traceClient);
+
+        JobDeleteResponse kept = manager.deleteJobsOlderThan(1, 10, 2, null);
+
+        assertEquals(3, getJobDocCount());
+        assertEquals(6, getTracingDocCount());
+        assertEquals(0, kept.totalCount);
+
+        JobDeleteResponse actual = manager.deleteJobsOlderThan(0, 10, 2, null);
+
+        assertEquals(0, getJobDocCount());
+        assertEquals(0, getTracingDocCount());
+        assertEquals(3, actual.totalCount);
+        assertEquals(0, actual.errorCount);
+        assertEquals(6, actual.deletedTraceCount);
+    }
 }
@@ -0,0 +1,146 @@
+package com.marklogic.hub.job;
+
+import com.marklogic.hub.flow.CodeFormat;
+import com.marklogic.hub.flow.DataFormat;
+import com.marklogic.hub.flow.FlowBuilder;
+import com.marklogic.hub.flow.FlowType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class JobStatusWriterTest {
+
+    private static Job newJob() {
+        return Job.withFlow(FlowBuilder.newFlow()
+            .withEntityName("test")
+            .withName("my-test-flow")
+            .withType(FlowType.HARMONIZE)
+            .withDataFormat(DataFormat.XML)
+            .withCodeFormat(CodeFormat.XQUERY)
+            .build())
+            .withJobId("job");
+    }
+
+    private static String counts(Job job) {
+        return job.getStatus() + ":" + job.getSuccessfulEvents() + ":" + job.getFailedEvents();
+    }
+
+    @Test
+    public void testUpdatesAreCoalesced() throws InterruptedException {
+        Job job = newJob();
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        JobStatusWriter writer = new JobStatusWriter(job, JobStatusWriterTest::counts, (jobId, json) -> {
+            writes.add(json);
+            firstWrite.countDown();
+        }, TimeUnit.MINUTES.toMillis(1));
+
+        writer.update();
+        assertTrue(firstWrite.await(1, TimeUnit.MINUTES));
+        // the next write waits for the interval, so these all become one write
+        for (int i = 1; i <= 100; i++) {
+            synchronized (job) {
+                job.setCounts(i, 0, 0, 0);
+            }
+            writer.update();
+        }
+        assertEquals(1, writes.size());
+
+        synchronized (job) {
+            job.withStatus(JobStatus.FINISHED);
+        }
+        writer.close();
+        assertEquals(2, writes.size());
+        assertEquals("finished:100:0", writes.get(1));
+
+        // updates after closing are covered by the final write
+        writer.update();
+        assertEquals(2, writes.size());
+    }
+
+    @Test
+    public void testSnapshots() throws InterruptedException {
+        Job job = newJob();
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch snapshotsWritten = new CountDownLatch(3);
+        AtomicLong successes = new AtomicLong();
+        JobStatusWriter writer = new JobStatusWriter(job, JobStatusWriterTest::counts, (jobId, json) -> {
+            writes.add(json);
+            snapshotsWritten.countDown();
+        }, 0);
+
+        writer.snapshotEvery(10, () -> job.setCounts(successes.incrementAndGet(), 0, 0, 0));
+        assertTrue(snapshotsWritten.await(1, TimeUnit.MINUTES));
+        writer.close();
+
+        int size = writes.size();
+        assertEquals("started:" + successes.get() + ":0", writes.get(size - 1));
+        Thread.sleep(50);
+        assertEquals(size, writes.size());
+    }
+
+    @Test
+    public void testCloseWaitsForWriteInProgress() throws InterruptedException {
+        Job job = newJob();
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch finishWrite = new CountDownLatch(1);
+        JobStatusWriter writer = new JobStatusWriter(job, JobStatusWriterTest::counts, (jobId, json) -> {
+            if (writeStarted.getCount() > 0) {
+                writeStarted.countDown();
+                try {
+                    finishWrite.await();
+                }
+                catch (InterruptedException e) {
+                    writes.add("interrupted");
+                    return;
+                }
+            }
+            writes.add(json);
+        }, 0);
+
+        writer.update();
+        assertTrue(writeStarted.await(1, TimeUnit.MINUTES));
+        synchronized (job) {
+            job.withStatus(JobStatus.FINISHED);
+        }
+        Thread closer = new Thread(writer::close);
+        closer.start();
+        closer.join(100);
+        // the final write waits for the one in progress
+        assertTrue(closer.isAlive());
+        assertTrue(writes.isEmpty());
+
+        finishWrite.countDown();
+        closer.join(TimeUnit.MINUTES.toMillis(1));
+        assertFalse(closer.isAlive());
+        assertEquals(2, writes.size());
+        assertEquals("finished:0:0", writes.get(1));
+    }
+
+    @Test
+    public void testFailedWritesAreRetried() throws InterruptedException {
+        Job job = newJob();
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch failedWrite = new CountDownLatch(1);
+        JobStatusWriter writer = new JobStatusWriter(job, JobStatusWriterTest::counts, (jobId, json) -> {
+            if (failedWrite.getCount() > 0) {
+                failedWrite.countDown();
+                throw new RuntimeException("jobs database is down");
+            }
+            writes.add(json);
+        }, 0);
+
+        writer.update();
+        assertTrue(failedWrite.await(1, TimeUnit.MINUTES));
+        writer.close();
+        assertEquals(Collections.singletonList("started:0:0"), writes);
+    }
+}
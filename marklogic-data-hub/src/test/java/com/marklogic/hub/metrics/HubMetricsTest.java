@@ -0,0 +1,106 @@
+package com.marklogic.hub.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class HubMetricsTest {
+
+    @After
+    public void teardown() {
+        HubMetrics.reset();
+    }
+
+    @Test
+    public void testTimer() {
+        Timer timer = HubMetrics.timer("test.timer");
+        assertSame(timer, HubMetrics.timer("test.timer"));
+
+        timer.record(10, TimeUnit.MILLISECONDS);
+        timer.record(30, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, timer.getCount());
+        assertEquals(40, timer.getTotalTimeMillis(), 0.001);
+        assertEquals(20, timer.getMeanMillis(), 0.001);
+        assertEquals(30, timer.getMaxMillis(), 0.001);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> {
+                HubMetrics.gauge("test.inFlight").increment();
+                HubMetrics.counter("test.counter").increment(2);
+                HubMetrics.gauge("test.inFlight").decrement();
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(2000, HubMetrics.counter("test.counter").getCount());
+        assertEquals(0, HubMetrics.gauge("test.inFlight").getValue());
+    }
+
+    @Test
+    public void testSnapshot() {
+        HubMetrics.counter("test.b").increment();
+        HubMetrics.timer("test.a").record(1, TimeUnit.SECONDS);
+
+        Map<String, Map<String, Object>> snapshot = HubMetrics.snapshot();
+        assertArrayEquals(new String[] { "test.a", "test.b" }, snapshot.keySet().toArray());
+        assertEquals(1L, snapshot.get("test.b").get("count"));
+        assertEquals(1000.0, snapshot.get("test.a").get("maxMillis"));
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+        HubMetrics.counter("test.jmx").increment(3);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.marklogic.hub:type=Counter,name=test.jmx");
+        assertEquals(3L, server.getAttribute(name, "Count"));
+
+        HubMetrics.reset();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testGaugeWithSource() throws Exception {
+        AtomicLong source = new AtomicLong(5);
+        Gauge gauge = HubMetrics.gauge("test:source", source::get);
+        assertSame(gauge, HubMetrics.gauge("test:source"));
+        source.set(7);
+        assertEquals(7, gauge.getValue());
+
+        // names that are not valid ObjectName values are quoted
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.marklogic.hub:type=Gauge,name=" + ObjectName.quote("test:source"));
+        assertEquals(7L, server.getAttribute(name, "Value"));
+
+        HubMetrics.remove("test:source");
+        assertFalse(server.isRegistered(name));
+        assertTrue(HubMetrics.snapshot().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGaugeWithSourceCannotBeIncremented() {
+        HubMetrics.gauge("test.source", () -> 1).increment();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        HubMetrics.counter("test.mismatch");
+        HubMetrics.timer("test.mismatch");
+    }
+}
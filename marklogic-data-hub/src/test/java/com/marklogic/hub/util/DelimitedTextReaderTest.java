@@ -0,0 +1,43 @@
+package com.marklogic.hub.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DelimitedTextReaderTest {
+
+    @Test
+    public void testQuotedFields() throws IOException {
+        DelimitedTextReader reader = new DelimitedTextReader(new StringReader(
+            "id,name,notes\r\n" +
+            "1,\"Smith, Jo\",\"said \"\"hi\"\"\"\r\n" +
+            "\n" +
+            "2,Lee,\"two\nlines\"\n" +
+            "3,,"), ',');
+
+        assertEquals(Arrays.asList("id", "name", "notes"), reader.readRow());
+        assertEquals(1, reader.getLine());
+        assertEquals(Arrays.asList("1", "Smith, Jo", "said \"hi\""), reader.readRow());
+        assertEquals(Arrays.asList("2", "Lee", "two\nlines"), reader.readRow());
+        assertEquals(4, reader.getLine());
+        assertEquals(Arrays.asList("3", "", ""), reader.readRow());
+        assertEquals(6, reader.getLine());
+        assertNull(reader.readRow());
+    }
+
+    @Test
+    public void testOtherDelimiter() throws IOException {
+        DelimitedTextReader reader = new DelimitedTextReader(new StringReader("a|b,c\n"), '|');
+        assertEquals(Arrays.asList("a", "b,c"), reader.readRow());
+        assertNull(reader.readRow());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnclosedQuote() throws IOException {
+        new DelimitedTextReader(new StringReader("a,\"b\n"), ',').readRow();
+    }
+}
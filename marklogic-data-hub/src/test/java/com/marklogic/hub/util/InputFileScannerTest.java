@@ -0,0 +1,137 @@
+package com.marklogic.hub.util;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InputFileScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Set<Path> createTree(Path root, int directories, int filesPerDirectory) throws IOException {
+        Set<Path> jsonFiles = new HashSet<>();
+        for (int d = 0; d < directories; d++) {
+            Path directory = Files.createDirectories(root.resolve("dir-" + (d % 3)).resolve("sub-" + d));
+            for (int f = 0; f < filesPerDirectory; f++) {
+                jsonFiles.add(Files.write(directory.resolve("doc-" + f + ".json"), "{}".getBytes()));
+                Files.write(directory.resolve("doc-" + f + ".txt"), "text".getBytes());
+            }
+        }
+        return jsonFiles;
+    }
+
+    @Test
+    public void testListsEveryAcceptedFileOnce() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Set<Path> expected = createTree(root, 20, 25);
+        InputRates rates = new InputRates();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        // a read-ahead much smaller than the tree makes the listing wait for the readers
+        InputFileScanner scanner = new InputFileScanner(root, (r, file) -> file.toString().endsWith(".json"),
+            4, 5, rates, errors::add);
+        scanner.start();
+
+        List<Path> found = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService readers = Executors.newFixedThreadPool(3);
+        for (int i = 0; i < 3; i++) {
+            readers.execute(() -> {
+                try {
+                    Path file;
+                    while ((file = scanner.next()) != null) {
+                        found.add(file);
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        readers.shutdown();
+        assertTrue(readers.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(expected.size(), found.size());
+        assertEquals(expected, new HashSet<>(found));
+        assertEquals(expected.size(), rates.getScanned());
+        assertTrue(scanner.isFinished());
+        assertTrue(rates.isScanFinished());
+        assertTrue(errors.isEmpty());
+        // the end stays visible to later callers
+        assertNull(scanner.next());
+    }
+
+    @Test
+    public void testSymlinkLoop() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Path sub = Files.createDirectories(root.resolve("a").resolve("b"));
+        Path file = Files.write(sub.resolve("doc.json"), "{}".getBytes());
+        try {
+            Files.createSymbolicLink(sub.resolve("up"), root);
+        }
+        catch (UnsupportedOperationException | IOException e) {
+            Assume.assumeNoException(e);
+        }
+
+        InputFileScanner scanner = new InputFileScanner(root, (r, f) -> true, 2, 100, new InputRates(), message -> {});
+        scanner.start();
+        List<Path> found = new ArrayList<>();
+        Path next;
+        while ((next = scanner.next()) != null) {
+            found.add(next);
+        }
+        assertEquals(Collections.singletonList(file), found);
+    }
+
+    @Test
+    public void testSingleFileAndMissingPath() throws Exception {
+        Path file = Files.write(folder.getRoot().toPath().resolve("one.xml"), "<a/>".getBytes());
+        InputFileScanner scanner = new InputFileScanner(file, (r, f) -> true, 2, 2, new InputRates(), message -> {});
+        scanner.start();
+        assertEquals(file, scanner.next());
+        assertNull(scanner.next());
+
+        List<String> errors = new ArrayList<>();
+        scanner = new InputFileScanner(folder.getRoot().toPath().resolve("missing"), (r, f) -> true, 2, 2,
+            new InputRates(), errors::add);
+        scanner.start();
+        assertNull(scanner.next());
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    public void testRates() {
+        long[] now = { 0 };
+        InputRates rates = new InputRates(() -> now[0]);
+        for (int i = 0; i < 100; i++) {
+            rates.scanned();
+        }
+        now[0] = TimeUnit.SECONDS.toNanos(1);
+        rates.scanFinished();
+        for (int i = 0; i < 40; i++) {
+            rates.read(1024 * 1024);
+        }
+        rates.written(20);
+        now[0] = TimeUnit.SECONDS.toNanos(2);
+
+        assertEquals(100, rates.getScanRate(), 0.001);
+        assertEquals(20, rates.getReadRate(), 0.001);
+        assertEquals(20 * 1024 * 1024, rates.getReadBytesRate(), 0.001);
+        assertEquals(10, rates.getWriteRate(), 0.001);
+        assertEquals("scanned 100 files (100.0/s), read 40 files (20.0/s, 20.00 MB/s), wrote 20 documents (10.0/s)", rates.toString());
+    }
+}
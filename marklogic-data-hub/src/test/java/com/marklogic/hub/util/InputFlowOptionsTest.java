@@ -0,0 +1,95 @@
+package com.marklogic.hub.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class InputFlowOptionsTest {
+
+    private static JsonNode json(String json) throws IOException {
+        return new ObjectMapper().readTree(json.replace('\'', '"'));
+    }
+
+    @Test
+    public void testQuotedMlcpOptions() throws IOException {
+        Path input = Paths.get("build", "input").toAbsolutePath();
+        String base = input.toUri().getPath();
+        InputFlowOptions options = InputFlowOptions.fromMlcpOptions(new ObjectMapper().readTree(
+            "{" +
+                "\"input_file_path\":\"" + input.toString().replace("\\", "\\\\") + "\"," +
+                "\"input_file_type\":\"\\\"documents\\\"\"," +
+                "\"output_collections\":\"\\\"Employee,input\\\"\"," +
+                "\"output_permissions\":\"\\\"rest-reader,read,rest-writer,update\\\"\"," +
+                "\"output_uri_replace\":\"\\\"" + base + ",''\\\"\"," +
+                "\"output_uri_prefix\":\"/employees\"," +
+                "\"document_type\":\"\\\"json\\\"\"," +
+                "\"batch_size\":\"50\"," +
+                "\"transform_param\":\"\\\"entity-name=My+Entity,flow-name=input,options={\\\"\\\"a\\\"\\\":1,\\\"\\\"b\\\"\\\":\\\"\\\"c+d\\\"\\\"}\\\"\"" +
+            "}"));
+
+        assertEquals(input.toString(), options.getInputFilePath());
+        assertEquals(2, options.getCollections().size());
+        assertEquals("input", options.getCollections().get(1));
+        assertEquals(2, options.getPermissions().size());
+        assertArrayEquals(new String[] { "rest-writer", "update" }, options.getPermissions().get(1));
+        assertEquals(50, options.getBatchSize());
+        assertEquals(InputFlowOptions.DEFAULT_THREAD_COUNT, options.getThreadCount());
+
+        assertEquals("My Entity", options.getTransformParams().get("entity-name"));
+        assertEquals("input", options.getTransformParams().get("flow-name"));
+        assertEquals("{\"a\":1,\"b\":\"c+d\"}", options.getTransformParams().get("options"));
+
+        Path file = input.resolve("employee1.xml");
+        assertEquals("/employees/employee1.xml", options.toUri(file));
+        assertEquals("json", options.documentType(file));
+    }
+
+    @Test
+    public void testDocumentTypeFromExtension() throws IOException {
+        InputFlowOptions options = InputFlowOptions.fromMlcpOptions(json("{'input_file_path': 'input', 'document_type': 'mixed'}"));
+        assertEquals("xml", options.documentType(Paths.get("a.XML")));
+        assertEquals("json", options.documentType(Paths.get("a.json")));
+        assertEquals("text", options.documentType(Paths.get("a.txt")));
+        assertEquals("binary", options.documentType(Paths.get("a.pdf")));
+        assertEquals(Paths.get("a.json").toAbsolutePath().toUri().getPath(), options.toUri(Paths.get("a.json")));
+    }
+
+    @Test
+    public void testUnsupportedOptions() throws IOException {
+        try {
+            InputFlowOptions.fromMlcpOptions(json("{'document_type': 'json'}"));
+            fail("input_file_path is required");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("input_file_path"));
+        }
+        try {
+            InputFlowOptions.fromMlcpOptions(json("{'input_file_path': 'input', 'input_file_type': 'rdf'}"));
+            fail("rdf needs mlcp");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("rdf"));
+        }
+    }
+
+    @Test
+    public void testFileFilters() throws IOException {
+        Path root = Paths.get("input").toAbsolutePath();
+        InputFlowOptions options = InputFlowOptions.fromMlcpOptions(json(
+            "{'input_file_path': 'input', 'input_file_extensions': 'json, .XML', 'input_file_glob': '2018/**', 'input_file_pattern': 'doc-.*'}"));
+        assertTrue(options.accepts(root, root.resolve("2018/01/doc-1.json")));
+        assertTrue(options.accepts(root, root.resolve("2018/doc-2.xml")));
+        assertFalse(options.accepts(root, root.resolve("2018/01/doc-1.txt")));
+        assertFalse(options.accepts(root, root.resolve("2017/01/doc-1.json")));
+        assertFalse(options.accepts(root, root.resolve("2018/01/other.json")));
+
+        options = InputFlowOptions.fromMlcpOptions(json("{'input_file_path': 'input'}"));
+        assertTrue(options.accepts(root, root.resolve("anything.bin")));
+    }
+}
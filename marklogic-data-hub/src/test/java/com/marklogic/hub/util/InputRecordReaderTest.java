@@ -0,0 +1,133 @@
+package com.marklogic.hub.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class InputRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, String> records = new LinkedHashMap<>();
+    private final Map<String, String> types = new LinkedHashMap<>();
+    private final List<String> errors = new ArrayList<>();
+
+    private long read(String options, Path file) throws IOException {
+        InputFlowOptions inputOptions = InputFlowOptions.fromMlcpOptions(
+            new ObjectMapper().readTree(options.replace('\'', '"')));
+        return new InputRecordReader(inputOptions, errors::add).read(file, (uri, content, documentType) -> {
+            records.put(uri, new String(content, StandardCharsets.UTF_8));
+            types.put(uri, documentType);
+        });
+    }
+
+    private Path gzip(String name, String text) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    @Test
+    public void testGzippedDelimitedTextToXml() throws IOException {
+        Path file = gzip("people.csv.gz", "id,first name,<b>\n1,Jo,a&b\n2,Lee\n3,Sam,c\n");
+        long count = read("{'input_file_path': 'x', 'input_file_type': 'delimited_text', 'input_compressed': 'true', " +
+            "'output_uri_prefix': '/people/', 'output_uri_suffix': '.xml'}", file);
+
+        assertEquals(2, count);
+        assertEquals("<root><id>1</id><first_name>Jo</first_name><_b_>a&amp;b</_b_></root>", records.get("/people/1.xml"));
+        assertEquals("xml", types.get("/people/3.xml"));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("line 3"));
+    }
+
+    @Test
+    public void testDelimitedTextToJson() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("people.tsv"), "name\tid\nJo\t7\n".getBytes(StandardCharsets.UTF_8));
+        long count = read("{'input_file_path': 'x', 'input_file_type': 'delimited_text', 'document_type': 'json', " +
+            "'delimiter': '\\t', 'uri_id': 'id'}", file);
+
+        assertEquals(1, count);
+        JsonNode json = new ObjectMapper().readTree(records.get("7"));
+        assertEquals("Jo", json.get("name").asText());
+        assertEquals("json", types.get("7"));
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        Path file = gzip("feed.json.gz", "{\"id\":\"a\",\"n\":1}\n\n{\"id\":\"b\"}\nnot json\n{\"n\":2}\n");
+        long count = read("{'input_file_path': 'x', 'input_file_type': 'delimited_json', 'input_compressed': 'true', " +
+            "'uri_id': 'id'}", file);
+
+        assertEquals(2, count);
+        assertEquals("{\"id\":\"a\",\"n\":1}", records.get("a"));
+        assertTrue(records.containsKey("b"));
+        assertEquals(2, errors.size());
+
+        records.clear();
+        Path plain = Files.write(folder.getRoot().toPath().resolve("feed.json"), "{}\n{}\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, read("{'input_file_path': 'x', 'input_file_type': 'delimited_json'}", plain));
+        assertTrue(records.containsKey("feed.json-2"));
+    }
+
+    @Test
+    public void testJsonLines_badLineWithoutUriId() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("feed.json"),
+            "{\"n\":1}\n{\"n\":\n{\"n\":3} {\"n\":4}\n[1,2]\n".getBytes(StandardCharsets.UTF_8));
+        long count = read("{'input_file_path': 'x', 'input_file_type': 'delimited_json'}", file);
+
+        // the broken lines are reported and never reach the batcher
+        assertEquals(2, count);
+        assertEquals("{\"n\":1}", records.get("feed.json-1"));
+        assertEquals("[1,2]", records.get("feed.json-4"));
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).contains("line 2"));
+        assertTrue(errors.get(1).contains("line 3"));
+    }
+
+    @Test
+    public void testZipEntries() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("docs.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("a/"));
+            zip.putNextEntry(new ZipEntry("a/one.xml"));
+            zip.write("<one/>".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("two.json"));
+            zip.write("{}".getBytes(StandardCharsets.UTF_8));
+        }
+        long count = read("{'input_file_path': 'x', 'input_compressed': 'true', 'output_uri_prefix': '/'}", file);
+
+        assertEquals(2, count);
+        assertEquals("<one/>", records.get("/a/one.xml"));
+        assertEquals("xml", types.get("/a/one.xml"));
+        assertEquals("json", types.get("/two.json"));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testXmlNames() {
+        assertEquals("name", InputRecordReader.toXmlName("name"));
+        assertEquals("_1st", InputRecordReader.toXmlName("1st"));
+        assertEquals("a_b-c", InputRecordReader.toXmlName("a b-c"));
+        assertEquals("_", InputRecordReader.toXmlName(""));
+    }
+}
@@ -0,0 +1,28 @@
+package com.marklogic.hub.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LineRingBufferTest {
+
+    @Test
+    public void testKeepsMostRecentLines() {
+        LineRingBuffer instance = new LineRingBuffer(3);
+        assertEquals(Collections.emptyList(), instance.getLines());
+
+        instance.add("a");
+        instance.add("b");
+        assertEquals(Arrays.asList("a", "b"), instance.getLines());
+        assertEquals(0, instance.getDroppedLines());
+
+        for (String line : new String[] { "c", "d", "e" }) {
+            instance.add(line);
+        }
+        assertEquals(Arrays.asList("c", "d", "e"), instance.getLines());
+        assertEquals(2, instance.getDroppedLines());
+    }
+}
@@ -61,6 +61,7 @@ class DataHubPlugin implements Plugin<Project> {
         String flowGroup = "MarkLogic Data Hub Flow Management"
         project.task("hubRunFlow", group: flowGroup, type: RunFlowTask)
         project.task("hubDeleteJobs", group: flowGroup, type: DeleteJobsTask )
+        project.task("hubExportMetrics", group: flowGroup, type: ExportMetricsTask)
 
         logger.info("Finished initializing ml-data-hub\n")
     }
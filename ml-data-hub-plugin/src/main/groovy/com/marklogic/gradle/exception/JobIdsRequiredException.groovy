@@ -4,6 +4,6 @@ import org.gradle.api.GradleException
 
 class JobIdsRequiredException extends GradleException {
     JobIdsRequiredException() {
-        super("jobIds property is required. Supply a comma-separated list with -PjobIds=jobids")
+        super("jobIds property is required. Supply a comma-separated list with -PjobIds=jobids, or -PolderThanDays=days to delete old jobs")
     }
 }
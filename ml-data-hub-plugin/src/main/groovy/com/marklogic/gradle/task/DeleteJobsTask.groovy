@@ -5,28 +5,77 @@ import com.marklogic.hub.job.JobDeleteResponse
 import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.TaskAction
 
+import java.util.concurrent.atomic.AtomicLong
+
 class DeleteJobsTask extends HubTask {
 
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000
+
     @Input
     public String jobIds
 
+    @Input
+    public Integer olderThanDays
+
+    @Input
+    public Integer batchSize
+
+    @Input
+    public Integer threadCount
+
     @TaskAction
     void deleteJobs() {
         if (jobIds == null) {
             jobIds = project.hasProperty("jobIds") ? project.property("jobIds") : null
         }
-        if (jobIds == null) {
+        if (olderThanDays == null) {
+            olderThanDays = project.hasProperty("olderThanDays") ?
+                Integer.parseInt(project.property("olderThanDays")) : null
+        }
+        // "a, b" and a trailing comma should not leave ids that match no job
+        def ids = jobIds == null ? [] : jobIds.split(",").collect { it.trim() }.findAll { !it.isEmpty() }
+        if (ids.isEmpty() && olderThanDays == null) {
             throw new JobIdsRequiredException()
         }
+        if (batchSize == null) {
+            batchSize = project.hasProperty("batchSize") ?
+                Integer.parseInt(project.property("batchSize")) : 100
+        }
+        if (threadCount == null) {
+            threadCount = project.hasProperty("threadCount") ?
+                Integer.parseInt(project.property("threadCount")) : 4
+        }
 
-        println("Deleting jobs: " + jobIds)
+        if (!ids.isEmpty()) {
+            println("Deleting jobs: " + ids.join(","))
+        }
+        else {
+            println("Deleting jobs that ended more than " + olderThanDays + " days ago")
+        }
         def jobManager = getJobManager()
         def dh = getDataHub()
         if (!dh.isInstalled()) {
             println("Data Hub is not installed.")
             return
         }
-        def jobDeleteResponse = jobManager.deleteJobs(jobIds)
+        // every batch is logged at info level, and progress is printed every few seconds
+        def lastPrinted = new AtomicLong(System.currentTimeMillis())
+        def listener = { long deletedTraces, long deletedJobs ->
+            def message = "Deleted " + deletedTraces + " traces and " + deletedJobs + " jobs"
+            logger.info(message)
+            long now = System.currentTimeMillis()
+            long last = lastPrinted.get()
+            if (now - last >= PROGRESS_INTERVAL_MILLIS && lastPrinted.compareAndSet(last, now)) {
+                println(message)
+            }
+        }
+        JobDeleteResponse jobDeleteResponse
+        if (!ids.isEmpty()) {
+            jobDeleteResponse = jobManager.deleteJobs(ids, batchSize, threadCount, listener)
+        }
+        else {
+            jobDeleteResponse = jobManager.deleteJobsOlderThan(olderThanDays, batchSize, threadCount, listener)
+        }
         print jobDeleteResponse
     }
 
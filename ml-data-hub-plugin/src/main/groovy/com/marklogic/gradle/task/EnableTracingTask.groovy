@@ -1,15 +1,60 @@
 package com.marklogic.gradle.task
 
 import com.marklogic.gradle.exception.HubNotInstalledException
+import com.marklogic.hub.Tracing
+import com.marklogic.hub.TracingSettings
+import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.TaskAction
 
 class EnableTracingTask extends HubTask {
 
+    @Input
+    public Integer sampleRate
+
+    @Input
+    public Boolean errorsOnly
+
+    @Input
+    public Integer maxStepBytes
+
+    @Input
+    public Boolean hashLargeSteps
+
     @TaskAction
     void enableTracing() {
         if (!isHubInstalled()) {
             throw new HubNotInstalledException()
         }
-        getTracing().enable()
+        // only the settings that were given are changed
+        if (sampleRate == null && project.hasProperty("traceSampleRate")) {
+            sampleRate = Integer.parseInt(project.property("traceSampleRate"))
+        }
+        if (errorsOnly == null && project.hasProperty("traceErrorsOnly")) {
+            errorsOnly = Boolean.parseBoolean(project.property("traceErrorsOnly"))
+        }
+        if (maxStepBytes == null && project.hasProperty("traceMaxStepBytes")) {
+            maxStepBytes = Integer.parseInt(project.property("traceMaxStepBytes"))
+        }
+        if (hashLargeSteps == null && project.hasProperty("traceHashLargeSteps")) {
+            hashLargeSteps = Boolean.parseBoolean(project.property("traceHashLargeSteps"))
+        }
+
+        TracingSettings settings = new TracingSettings()
+        if (sampleRate != null) {
+            settings.withSamplePercent(sampleRate)
+        }
+        if (errorsOnly != null) {
+            settings.withErrorsOnly(errorsOnly)
+        }
+        if (maxStepBytes != null) {
+            settings.withMaxStepBytes(maxStepBytes)
+        }
+        if (hashLargeSteps != null) {
+            settings.withHashLargeSteps(hashLargeSteps)
+        }
+
+        Tracing tracing = getTracing()
+        tracing.saveSettings(settings)
+        tracing.enable()
     }
 }
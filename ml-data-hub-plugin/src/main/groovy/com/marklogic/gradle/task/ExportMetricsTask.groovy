@@ -0,0 +1,32 @@
+package com.marklogic.gradle.task
+
+import com.marklogic.hub.metrics.HubMetrics
+import groovy.json.JsonOutput
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Prints or saves the data hub metrics of this build, so run it after the
+ * tasks to measure, e.g. gradle hubRunFlow hubExportMetrics
+ */
+class ExportMetricsTask extends HubTask {
+
+    @Input
+    public String metricsFile
+
+    @TaskAction
+    void exportMetrics() {
+        if (metricsFile == null) {
+            metricsFile = project.hasProperty("metricsFile") ? project.property("metricsFile") : null
+        }
+
+        def json = JsonOutput.prettyPrint(JsonOutput.toJson(HubMetrics.snapshot()))
+        if (metricsFile == null) {
+            println(json)
+        }
+        else {
+            project.file(metricsFile).text = json
+            println("Saved the data hub metrics to " + metricsFile)
+        }
+    }
+}
@@ -39,6 +39,21 @@ class RunFlowTask extends HubTask {
     @Input
     public Boolean failHard
 
+    @Input
+    public Boolean streamingCollector
+
+    @Input
+    public Boolean partitionedCollector
+
+    @Input
+    public Boolean adaptiveBatching
+
+    @Input
+    public Boolean batchedWrites
+
+    @Input
+    public String resumeJobId
+
     @TaskAction
     void runFlow() {
         if (entityName == null) {
@@ -86,6 +101,30 @@ class RunFlowTask extends HubTask {
                 Boolean.parseBoolean(project.property("failHard")) : false
         }
 
+        if (streamingCollector == null) {
+            streamingCollector = project.hasProperty("streamingCollector") ?
+                Boolean.parseBoolean(project.property("streamingCollector")) : false
+        }
+
+        if (partitionedCollector == null) {
+            partitionedCollector = project.hasProperty("partitionedCollector") ?
+                Boolean.parseBoolean(project.property("partitionedCollector")) : false
+        }
+
+        if (adaptiveBatching == null) {
+            adaptiveBatching = project.hasProperty("adaptiveBatching") ?
+                Boolean.parseBoolean(project.property("adaptiveBatching")) : false
+        }
+
+        if (batchedWrites == null) {
+            batchedWrites = project.hasProperty("batchedWrites") ?
+                Boolean.parseBoolean(project.property("batchedWrites")) : false
+        }
+
+        if (resumeJobId == null) {
+            resumeJobId = project.hasProperty("resumeJobId") ? project.property("resumeJobId") : null
+        }
+
         if (!isHubInstalled()) {
             throw new HubNotInstalledException()
         }
@@ -124,6 +163,10 @@ class RunFlowTask extends HubTask {
             .withThreadCount(threadCount)
             .withSourceClient(sourceClient)
             .withDestinationDatabase(destDB)
+            .withStreamingCollector(streamingCollector)
+            .withPartitionedCollector(partitionedCollector)
+            .withAdaptiveBatching(adaptiveBatching)
+            .withBatchedWrites(batchedWrites)
             .onItemComplete(new FlowItemCompleteListener() {
                 @Override
                 void processCompletion(String jobId, String itemId) {
@@ -136,7 +179,7 @@ class RunFlowTask extends HubTask {
                     failed.add(itemId)
                 }
             })
-        JobTicket jobTicket = flowRunner.run()
+        JobTicket jobTicket = resumeJobId != null ? flowRunner.resume(resumeJobId) : flowRunner.run()
         flowRunner.awaitCompletion()
 
         def jobDocMgr = getHubConfig().newJobDbClient().newDocumentManager()
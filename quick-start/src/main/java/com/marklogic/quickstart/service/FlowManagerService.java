@@ -25,6 +25,7 @@ import com.marklogic.hub.flow.FlowRunner;
 import com.marklogic.hub.flow.FlowStatusListener;
 import com.marklogic.hub.flow.FlowType;
 import com.marklogic.hub.flow.impl.FlowImpl;
+import com.marklogic.hub.util.InputFlowRunner;
 import com.marklogic.hub.util.MlcpRunner;
 import com.marklogic.quickstart.auth.ConnectionAuthenticationToken;
 import com.marklogic.quickstart.model.EnvironmentConfig;
@@ -150,8 +151,14 @@ public class FlowManagerService {
     }
 
     public void runMlcp(Flow flow, JsonNode json, FlowStatusListener statusListener) {
-        String mlcpPath = json.get("mlcpPath").textValue();
         HubConfig hubConfig = envConfig().getMlSettings();
+        // documents can be loaded in this JVM rather than in a new one for mlcp
+        if (json.has("inProcess") && json.get("inProcess").asBoolean()) {
+            InputFlowRunner runner = new InputFlowRunner(hubConfig, flow, hubConfig.newStagingClient(), json.get("mlcpOptions"), statusListener);
+            runner.start();
+            return;
+        }
+        String mlcpPath = json.get("mlcpPath").textValue();
         MlcpRunner runner = new MlcpRunner(mlcpPath, "com.marklogic.contentpump.ContentPump", hubConfig, flow, hubConfig.newStagingClient(), json.get("mlcpOptions"), statusListener);
         runner.start();
     }
@@ -19,7 +19,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.hub.Debugging;
 import com.marklogic.hub.Tracing;
+import com.marklogic.hub.TracingSettings;
 import com.marklogic.quickstart.EnvironmentAware;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
@@ -66,6 +68,16 @@ public class SettingsController extends EnvironmentAware {
         return om.readTree("{\"enabled\":" + t.isEnabled() + "}");
     }
 
+    @RequestMapping(value="/trace/settings", method = RequestMethod.GET)
+    public TracingSettings getTracingSettings() {
+        return getTracing().getSettings();
+    }
+
+    @RequestMapping(value="/trace/settings", method = RequestMethod.POST)
+    public void saveTracingSettings(@RequestBody TracingSettings settings) {
+        getTracing().saveSettings(settings);
+    }
+
     @RequestMapping(value="/debug/enable", method = RequestMethod.POST)
     public void enableDebuging() {
         Debugging t = getDebugging();
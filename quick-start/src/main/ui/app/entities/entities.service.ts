@@ -189,6 +189,7 @@ export class EntitiesService {
     const url = this.url(`/entities/${flow.entityName}/flows/input/${flow.flowName}/run`);
     let options = {
       mlcpPath: this.settingsService.mlcpPath,
+      inProcess: this.settingsService.inProcessInputFlows,
       mlcpOptions: mlcpOptions
     };
     return this.http.post(url, options).subscribe(() => {});
@@ -50,6 +50,14 @@ export class SettingsComponent {
     }
   }
 
+  inProcessInputFlows(): boolean {
+    return this.settings.inProcessInputFlows;
+  }
+
+  toggleInProcessInputFlows(checked: boolean): void {
+    this.settings.inProcessInputFlows = checked;
+  }
+
   debugEnabled() {
     return this.settings.debugEnabled;
   }
@@ -72,6 +72,14 @@ export class SettingsService {
     localStorage.setItem('mlcpPath', path);
   }
 
+  get inProcessInputFlows(): boolean {
+    return localStorage.getItem('inProcessInputFlows') === 'true';
+  }
+
+  set inProcessInputFlows(inProcess: boolean) {
+    localStorage.setItem('inProcessInputFlows', String(inProcess));
+  }
+
   validateMlcpPath(path: string) {
     return this.http.get(`/api/utils/validatePath?path=${encodeURIComponent(path)}`)
       .map(this.extractData);